@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.contexts;
+
+/**
+ * A context function whose dependents are only notified when its value actually changes.
+ * <p>
+ * When a value used by a regular context function changes, the computed value is discarded
+ * and everything that depends on it is notified, to be computed again on demand. When a value
+ * used by this function changes and its previous value had been computed, the function is
+ * evaluated again right away; if the new value is equal to the previous one, dependents are
+ * not notified.
+ * </p>
+ * <p>
+ * This class is intended to be subclassed by clients.
+ * </p>
+ * @see ContextFunction
+ */
+public abstract class ComparingContextFunction extends ContextFunction {
+
+	/**
+	 * Constructs a new instance of the context function
+	 */
+	public ComparingContextFunction() {
+		// placeholder
+	}
+
+	/**
+	 * Returns whether the new value of this function is different from the old value.
+	 * The default implementation compares the values using <code>equals()</code>.
+	 * @param oldValue the previous value, may be <code>null</code>
+	 * @param newValue the new value, may be <code>null</code>
+	 * @return <code>true</code> if dependents need to be notified of the change
+	 */
+	public boolean changed(Object oldValue, Object newValue) {
+		if (oldValue == null)
+			return newValue != null;
+		return !oldValue.equals(newValue);
+	}
+}
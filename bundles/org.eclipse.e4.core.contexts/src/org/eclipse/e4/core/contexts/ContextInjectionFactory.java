@@ -11,6 +11,7 @@
 package org.eclipse.e4.core.contexts;
 
 import java.lang.annotation.Annotation;
+import java.util.Collection;
 import javax.inject.Scope;
 import javax.inject.Singleton;
 import org.eclipse.e4.core.di.IInjector;
@@ -72,6 +73,28 @@ final public class ContextInjectionFactory {
 		injector.inject(object, supplier);
 	}
 
+	/**
+	 * Injects a context into a number of independent domain objects. Values for all objects
+	 * are looked up first; the objects are then injected in the iteration order of the
+	 * collection. If the injection fails, none of the objects remain injected. See the class
+	 * comment for details on the injection algorithm that is used.
+	 * 
+	 * @param objects The objects to perform injection on
+	 * @param context The context to obtain injected values from
+	 * @throws InjectionException if an exception occurred while performing this operation
+	 */
+	static public void injectAll(Collection<?> objects, IEclipseContext context) throws InjectionException {
+		PrimaryObjectSupplier supplier = ContextObjectSupplier.getObjectSupplier(context, injector);
+		try {
+			injector.injectAll(objects, supplier);
+		} catch (RuntimeException e) {
+			// objects injected or tracked before the failure would still be updated
+			for (Object object : objects)
+				((EclipseContext) context).removeListenersTo(object);
+			throw e;
+		}
+	}
+
 	/**
 	 * Call a method, injecting the parameters from the context.
 	 * 
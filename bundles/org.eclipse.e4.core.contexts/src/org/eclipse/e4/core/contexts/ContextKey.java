@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.contexts;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An interned handle for a context key. For each key name there is exactly one instance
+ * of this class at a time, so keys can be compared by identity and looked up by their integer id
+ * rather than by hashing and comparing the name. Keys that are no longer referenced are
+ * discarded, so looking up arbitrary names does not retain them.
+ * <p>
+ * Clients that repeatedly access the same values are encouraged to obtain the key once
+ * and to use the {@link IEclipseContext} methods that accept keys.
+ * </p>
+ * @noextend This class is not intended to be extended by clients.
+ * @noinstantiate This class is not intended to be instantiated by clients.
+ */
+final public class ContextKey {
+
+	static private class KeyReference extends WeakReference<ContextKey> {
+		final String name;
+		final int id;
+
+		KeyReference(ContextKey key, ReferenceQueue<ContextKey> queue) {
+			super(key, queue);
+			this.name = key.name;
+			this.id = key.id;
+		}
+	}
+
+	final private static ConcurrentMap<String, KeyReference> registry = new ConcurrentHashMap<String, KeyReference>(256);
+	final private static ReferenceQueue<ContextKey> queue = new ReferenceQueue<ContextKey>();
+
+	// ids of discarded keys, reused so that id-indexed tables stay small; guarded by registry
+	private static int[] freeIds = new int[16];
+	private static int freeCount = 0;
+	private static int nextId = 0;
+
+	final private String name;
+	final private int id;
+
+	private ContextKey(String name, int id) {
+		this.name = name;
+		this.id = id;
+	}
+
+	/**
+	 * Returns the key for the given name.
+	 * @param name the name of the key
+	 * @return the key for the given name
+	 */
+	static public ContextKey get(String name) {
+		if (name == null)
+			throw new NullPointerException();
+		ContextKey key = lookup(name);
+		if (key != null)
+			return key;
+		synchronized (registry) {
+			expunge();
+			key = lookup(name);
+			if (key != null)
+				return key;
+			int id = (freeCount > 0) ? freeIds[--freeCount] : nextId++;
+			key = new ContextKey(name, id);
+			registry.put(name, new KeyReference(key, queue));
+			return key;
+		}
+	}
+
+	static private ContextKey lookup(String name) {
+		KeyReference ref = registry.get(name);
+		return (ref == null) ? null : ref.get();
+	}
+
+	static private void expunge() {
+		KeyReference ref;
+		while ((ref = (KeyReference) queue.poll()) != null) {
+			registry.remove(ref.name, ref);
+			if (freeCount == freeIds.length) {
+				int[] newIds = new int[freeCount * 2];
+				System.arraycopy(freeIds, 0, newIds, 0, freeCount);
+				freeIds = newIds;
+			}
+			freeIds[freeCount++] = ref.id;
+		}
+	}
+
+	/**
+	 * Returns the key for the given class. The key name is the class name.
+	 * @param clazz the class of the key
+	 * @return the key for the given class
+	 * @see #get(String)
+	 */
+	static public ContextKey get(Class<?> clazz) {
+		return get(clazz.getName());
+	}
+
+	/**
+	 * Returns the name of this key.
+	 * @return the name of this key
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the id of this key. Ids are small non-negative integers, unique among the
+	 * keys in use; the id of a discarded key may be given to a new key.
+	 * @return the id of this key
+	 */
+	public int getId() {
+		return id;
+	}
+
+	public int hashCode() {
+		return id;
+	}
+
+	public String toString() {
+		return name;
+	}
+}
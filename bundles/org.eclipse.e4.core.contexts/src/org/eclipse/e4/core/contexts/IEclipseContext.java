@@ -32,6 +32,10 @@ package org.eclipse.e4.core.contexts;
  * the class name, so the value stored for the class {@link java.lang.String} can be retrieved 
  * using the key value of "java.lang.String". 
  * </p>
+ * <p>
+ * Both kinds of keys can also be converted once into a {@link ContextKey} handle; the methods
+ * accepting handles avoid repeatedly hashing the key name.
+ * </p>
  * @noimplement This interface is not intended to be implemented by clients.
  * @noextend This interface is not intended to be extended by clients.
  */
@@ -54,6 +58,15 @@ public interface IEclipseContext {
 	 */
 	public boolean containsKey(Class<?> clazz);
 
+	/**
+	 * Returns whether this context or a parent has a value stored for the given key.
+	 * @param key the key being queried
+	 * @return <code>true</code> if this context has a value for the given key, and
+	 *         <code>false</code> otherwise.
+	 * @see #containsKey(String)
+	 */
+	public boolean containsKey(ContextKey key);
+
 	/**
 	 * Returns the context value associated with the given name. Returns <code>null</code> if no
 	 * such value is defined or computable by this context, or if the assigned value is
@@ -75,6 +88,14 @@ public interface IEclipseContext {
 	 */
 	public <T> T get(Class<T> clazz);
 
+	/**
+	 * Returns the context value associated with the given key.
+	 * @param key the key of the value to return
+	 * @return an object corresponding to the given key, or <code>null</code>
+	 * @see #get(String)
+	 */
+	public Object get(ContextKey key);
+
 	/**
 	 * Returns the context value associated with the given name in this context, or <code>null</code> if 
 	 * no such value is defined in this context.
@@ -102,6 +123,15 @@ public interface IEclipseContext {
 	 */
 	public <T> T getLocal(Class<T> clazz);
 
+	/**
+	 * Returns the context value associated with the given key in this context, or <code>null</code> if 
+	 * no such value is defined in this context.
+	 * @param key the key of the value to return
+	 * @return an object corresponding to the given key, or <code>null</code>
+	 * @see #getLocal(String)
+	 */
+	public Object getLocal(ContextKey key);
+
 	/**
 	 * Removes the given name and any corresponding value from this context.
 	 * <p>
@@ -120,6 +150,13 @@ public interface IEclipseContext {
 	 */
 	public void remove(Class<?> clazz);
 
+	/**
+	 * Removes the value for the given key from this context.
+	 * @param key the key to remove
+	 * @see #remove(String)
+	 */
+	public void remove(ContextKey key);
+
 	/**
 	 * Executes a runnable within this context. If the runnable accesses any values in this context
 	 * during its execution, the runnable will be executed again after any of those values change.
@@ -176,6 +213,15 @@ public interface IEclipseContext {
 	 */
 	public <T> void set(Class<T> clazz, T value);
 
+	/**
+	 * Sets a value to be associated with a given key in this context. 
+	 * @param key the key to store a value for
+	 * @param value the value to be stored, or a {@link ContextFunction} that can return 
+	 * the stored value.
+	 * @see #set(String, Object)
+	 */
+	public void set(ContextKey key, Object value);
+
 	/**
 	 * Modifies the value to be associated with the given name.
 	 * <p>
@@ -203,6 +249,15 @@ public interface IEclipseContext {
 	 */
 	public <T> void modify(Class<T> clazz, T value);
 
+	/**
+	 * Modifies the value to be associated with the given key.
+	 * @param key the key to store a value for
+	 * @param value the value to be stored, or a {@link ContextFunction} that can return the stored value.
+	 * @throws IllegalArgumentException if the variable has not been declared as modifiable
+	 * @see #modify(String, Object)
+	 */
+	public void modify(ContextKey key, Object value);
+
 	/**
 	 * Declares the named value as modifiable by descendants of this context. If the value does not
 	 * exist in this context, a <code>null</code> value added for the name.
@@ -218,11 +273,31 @@ public interface IEclipseContext {
 	 */
 	public void declareModifiable(Class<?> clazz);
 
+	/**
+	 * Declares the value for the key as modifiable by descendants of this context. 
+	 * If the value does not exist in this context, a <code>null</code> value added for the key.
+	 * @param key the key to be declared as modifiable by descendants
+	 * @see #declareModifiable(String)
+	 */
+	public void declareModifiable(ContextKey key);
+
 	/**
 	 * Process waiting updates for listeners that support batch notifications.
 	 */
 	public void processWaiting();
 
+	/**
+	 * Runs the given runnable, deferring notifications caused by changes made in it until
+	 * the runnable completes. Each affected {@link RunAndTrack} is then notified once, even
+	 * if several of the values it depends on were changed.
+	 * <p>
+	 * Batches are tracked per thread and may be nested; notifications are sent when the
+	 * outermost batch completes. Values read inside the batch reflect the changes made so far.
+	 * </p>
+	 * @param runnable the changes to make
+	 */
+	public void runBatch(Runnable runnable);
+
 	/**
 	 * Creates a new context using this context as a parent.
 	 * @return a new child context
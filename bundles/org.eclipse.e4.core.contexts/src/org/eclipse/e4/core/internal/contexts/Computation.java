@@ -10,11 +10,10 @@
  *******************************************************************************/
 package org.eclipse.e4.core.internal.contexts;
 
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import org.eclipse.e4.core.contexts.ContextKey;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.core.internal.contexts.EclipseContext.Scheduled;
 
@@ -30,15 +29,47 @@ abstract public class Computation {
 	 */
 	public abstract int hashCode();
 
-	protected Map<EclipseContext, Set<String>> dependencies = new HashMap<EclipseContext, Set<String>>();
+	// contexts this computation depends on, and the names used in each of them; the number
+	// of contexts is usually small, so they are kept in arrays and searched linearly
+	private EclipseContext[] dependentContexts;
+	private KeySet[] dependentNames;
+	private int dependentCount;
 
-	public void addDependency(EclipseContext context, String name) {
-		Set<String> properties = dependencies.get(context);
-		if (properties == null) {
-			properties = new HashSet<String>(4);
-			dependencies.put(context, properties);
+	public void addDependency(EclipseContext context, ContextKey name) {
+		int index = indexOf(context);
+		if (index == -1) {
+			if (dependentContexts == null) {
+				dependentContexts = new EclipseContext[2];
+				dependentNames = new KeySet[2];
+			} else if (dependentCount == dependentContexts.length) {
+				EclipseContext[] newContexts = new EclipseContext[dependentCount * 2];
+				KeySet[] newNames = new KeySet[dependentCount * 2];
+				System.arraycopy(dependentContexts, 0, newContexts, 0, dependentCount);
+				System.arraycopy(dependentNames, 0, newNames, 0, dependentCount);
+				dependentContexts = newContexts;
+				dependentNames = newNames;
+			}
+			index = dependentCount++;
+			dependentContexts[index] = context;
+			dependentNames[index] = new KeySet();
 		}
-		properties.add(name);
+		dependentNames[index].add(name);
+	}
+
+	private int indexOf(IEclipseContext context) {
+		for (int i = 0; i < dependentCount; i++) {
+			if (dependentContexts[i] == context)
+				return i;
+		}
+		return -1;
+	}
+
+	private void removeDependencies(int index) {
+		dependentCount--;
+		dependentContexts[index] = dependentContexts[dependentCount];
+		dependentNames[index] = dependentNames[dependentCount];
+		dependentContexts[dependentCount] = null;
+		dependentNames[dependentCount] = null;
 	}
 
 	protected void doHandleInvalid(ContextChangeEvent event, List<Scheduled> scheduled) {
@@ -46,7 +77,7 @@ abstract public class Computation {
 	}
 
 	public void handleInvalid(ContextChangeEvent event, List<Scheduled> scheduled) {
-		String name = event.getName();
+		ContextKey name = event.getKey();
 		EclipseContext context = (EclipseContext) event.getContext();
 
 		stopListening(context, name);
@@ -57,44 +88,51 @@ abstract public class Computation {
 	 * Remove this computation from all contexts that are tracking it
 	 */
 	protected void removeAll() {
-		for (EclipseContext c : dependencies.keySet()) {
-			c.removeListener(this);
+		for (int i = 0; i < dependentCount; i++) {
+			dependentContexts[i].removeListener(this);
+			dependentContexts[i] = null;
+			dependentNames[i] = null;
 		}
-		dependencies.clear();
+		dependentCount = 0;
 	}
 
 	public void startListening() {
-		for (EclipseContext c : dependencies.keySet()) {
-			c.addListener(this, dependencies.get(c));
-		}
+		for (int i = 0; i < dependentCount; i++)
+			dependentContexts[i].addListener(this, dependentNames[i]);
 	}
 
-	public void stopListening(EclipseContext context, String name) {
+	public void stopListening(EclipseContext context, ContextKey name) {
 		if (context == null) {
-			Set<EclipseContext> dependentContexts = dependencies.keySet();
-			for (EclipseContext dependentContext : dependentContexts) {
-				dependentContext.removeListener(this);
-			}
+			for (int i = 0; i < dependentCount; i++)
+				dependentContexts[i].removeListener(this);
 			return;
 		}
+		int index = indexOf(context);
 		if (name == null) {
-			dependencies.remove(context);
+			if (index != -1)
+				removeDependencies(index);
 			context.removeListener(this);
 			return;
 		}
-		Set<String> properties = dependencies.get(context);
-		if (properties != null) {
+		if (index != -1) {
+			KeySet properties = dependentNames[index];
 			properties.remove(name);
+			context.removeListener(this, name);
 			// if we no longer track any values in the context, remove dependency
-			if (properties.isEmpty()) {
-				dependencies.remove(context);
-				context.removeListener(this);
-			}
+			if (properties.isEmpty())
+				removeDependencies(index);
 		}
 	}
 
 	public Set<String> dependsOnNames(IEclipseContext context) {
-		return dependencies.get(context);
+		int index = indexOf(context);
+		if (index == -1)
+			return null;
+		ContextKey[] keys = dependentNames[index].toArray();
+		Set<String> result = new HashSet<String>(keys.length);
+		for (ContextKey key : keys)
+			result.add(key.getName());
+		return result;
 	}
 
 }
\ No newline at end of file
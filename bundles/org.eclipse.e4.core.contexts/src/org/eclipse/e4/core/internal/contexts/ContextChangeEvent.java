@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.e4.core.internal.contexts;
 
+import org.eclipse.e4.core.contexts.ContextKey;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.core.contexts.RunAndTrack;
 
@@ -70,7 +71,7 @@ public final class ContextChangeEvent {
 	private Object[] args;
 	private IEclipseContext context;
 	private int eventType;
-	private String key;
+	private ContextKey key;
 
 	private Object oldValue;
 
@@ -82,7 +83,7 @@ public final class ContextChangeEvent {
 	 * @param args
 	 * @param name
 	 */
-	ContextChangeEvent(IEclipseContext context, int eventType, Object[] args, String name, Object oldValue) {
+	ContextChangeEvent(IEclipseContext context, int eventType, Object[] args, ContextKey name, Object oldValue) {
 		this.context = context;
 		this.key = name;
 		this.eventType = eventType;
@@ -125,6 +126,16 @@ public final class ContextChangeEvent {
 	 * @return The name of the changed context value, or <code>null</code>
 	 */
 	public String getName() {
+		return (key == null) ? null : key.getName();
+	}
+
+	/**
+	 * Returns the key of the context value that changed, or <code>null</code> if not applicable
+	 * for this event type.
+	 * 
+	 * @return The key of the changed context value, or <code>null</code>
+	 */
+	public ContextKey getKey() {
 		return key;
 	}
 
@@ -164,7 +175,7 @@ public final class ContextChangeEvent {
 		if (key == null) {
 			if (other.key != null)
 				return false;
-		} else if (!key.equals(other.key))
+		} else if (key != other.key)
 			return false;
 		return true;
 	}
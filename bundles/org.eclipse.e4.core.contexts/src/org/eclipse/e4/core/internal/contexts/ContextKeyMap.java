@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.contexts;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.e4.core.contexts.ContextKey;
+
+/**
+ * A map from context keys to values, probed by key id using open addressing. Values
+ * may be <code>null</code>; use {@link #containsKey(ContextKey)} or {@link #lookup(ContextKey)}
+ * to tell a <code>null</code> value from a missing entry. Storage is only allocated when
+ * the first entry is added.
+ * <p>
+ * The map is copy-on-write: readers work on an immutable snapshot of the table and never
+ * lock, while writers are serialized and publish a new table.
+ * </p>
+ */
+@SuppressWarnings("unchecked")
+public class ContextKeyMap<V> {
+
+	/**
+	 * Returned by {@link ContextKeyMap#lookup(ContextKey)} if the map has no entry for the key.
+	 */
+	final public static Object NOT_FOUND = new Object();
+
+	final private static int MIN_CAPACITY = 8;
+
+	static private class Table {
+		final ContextKey[] keys;
+		final Object[] values;
+		final int size;
+
+		Table(ContextKey[] keys, Object[] values, int size) {
+			this.keys = keys;
+			this.values = values;
+			this.size = size;
+		}
+
+		int find(ContextKey key) {
+			int length = keys.length;
+			if (length == 0)
+				return -1;
+			for (int i = indexFor(key, length);; i = (i + 1) & (length - 1)) {
+				ContextKey candidate = keys[i];
+				if (candidate == key)
+					return i;
+				if (candidate == null)
+					return -1;
+			}
+		}
+	}
+
+	final private static Table EMPTY = new Table(new ContextKey[0], new Object[0], 0);
+
+	private volatile Table table = EMPTY;
+
+	static int indexFor(ContextKey key, int length) {
+		int h = key.getId() * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & (length - 1);
+	}
+
+	/**
+	 * Returns the value for the key, or {@link #NOT_FOUND} if there is no entry for the key.
+	 */
+	public Object lookup(ContextKey key) {
+		Table current = table;
+		int index = current.find(key);
+		return (index == -1) ? NOT_FOUND : current.values[index];
+	}
+
+	public V get(ContextKey key) {
+		Table current = table;
+		int index = current.find(key);
+		return (index == -1) ? null : (V) current.values[index];
+	}
+
+	public boolean containsKey(ContextKey key) {
+		return table.find(key) != -1;
+	}
+
+	synchronized public V put(ContextKey key, V value) {
+		Table current = table;
+		int index = current.find(key);
+		if (index != -1) {
+			Object oldValue = current.values[index];
+			if (oldValue == value)
+				return (V) oldValue;
+			Object[] newValues = new Object[current.values.length];
+			System.arraycopy(current.values, 0, newValues, 0, newValues.length);
+			newValues[index] = value;
+			table = new Table(current.keys, newValues, current.size);
+			return (V) oldValue;
+		}
+		int capacity = current.keys.length;
+		if ((current.size + 1) * 3 > capacity * 2)
+			capacity = (capacity == 0) ? MIN_CAPACITY : capacity * 2;
+		ContextKey[] newKeys = new ContextKey[capacity];
+		Object[] newValues = new Object[capacity];
+		if (capacity == current.keys.length) {
+			System.arraycopy(current.keys, 0, newKeys, 0, capacity);
+			System.arraycopy(current.values, 0, newValues, 0, capacity);
+		} else {
+			for (int i = 0; i < current.keys.length; i++) {
+				if (current.keys[i] != null)
+					insert(newKeys, newValues, current.keys[i], current.values[i]);
+			}
+		}
+		insert(newKeys, newValues, key, value);
+		table = new Table(newKeys, newValues, current.size + 1);
+		return null;
+	}
+
+	synchronized public V remove(ContextKey key) {
+		Table current = table;
+		int index = current.find(key);
+		if (index == -1)
+			return null;
+		Object oldValue = current.values[index];
+		if (current.size == 1) {
+			table = EMPTY;
+			return (V) oldValue;
+		}
+		int length = current.keys.length;
+		ContextKey[] newKeys = new ContextKey[length];
+		Object[] newValues = new Object[length];
+		System.arraycopy(current.keys, 0, newKeys, 0, length);
+		System.arraycopy(current.values, 0, newValues, 0, length);
+		deleteAt(newKeys, newValues, index);
+		table = new Table(newKeys, newValues, current.size - 1);
+		return (V) oldValue;
+	}
+
+	public int size() {
+		return table.size;
+	}
+
+	public boolean isEmpty() {
+		return table.size == 0;
+	}
+
+	synchronized public void clear() {
+		table = EMPTY;
+	}
+
+	/**
+	 * Returns a snapshot of the keys in this map.
+	 */
+	public ContextKey[] keys() {
+		Table current = table;
+		ContextKey[] result = new ContextKey[current.size];
+		int pos = 0;
+		for (int i = 0; i < current.keys.length; i++) {
+			if (current.keys[i] != null)
+				result[pos++] = current.keys[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a snapshot of the values in this map.
+	 */
+	public List<V> values() {
+		Table current = table;
+		List<V> result = new ArrayList<V>(current.size);
+		for (int i = 0; i < current.keys.length; i++) {
+			if (current.keys[i] != null)
+				result.add((V) current.values[i]);
+		}
+		return result;
+	}
+
+	private static void insert(ContextKey[] keys, Object[] values, ContextKey key, Object value) {
+		int length = keys.length;
+		int i = indexFor(key, length);
+		while (keys[i] != null)
+			i = (i + 1) & (length - 1);
+		keys[i] = key;
+		values[i] = value;
+	}
+
+	// backward shift deletion keeps probe sequences intact without tombstones
+	private static void deleteAt(ContextKey[] keys, Object[] values, int index) {
+		int length = keys.length;
+		int hole = index;
+		for (int i = (index + 1) & (length - 1); keys[i] != null; i = (i + 1) & (length - 1)) {
+			int home = indexFor(keys[i], length);
+			if (((i - home) & (length - 1)) >= ((i - hole) & (length - 1))) {
+				keys[hole] = keys[i];
+				values[hole] = values[i];
+				hole = i;
+			}
+		}
+		keys[hole] = null;
+		values[hole] = null;
+	}
+}
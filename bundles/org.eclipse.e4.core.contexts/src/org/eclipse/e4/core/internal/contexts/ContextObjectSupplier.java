@@ -10,32 +10,34 @@
  *******************************************************************************/
 package org.eclipse.e4.core.internal.contexts;
 
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
-import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.List;
 import org.eclipse.e4.core.contexts.Active;
+import org.eclipse.e4.core.contexts.ContextKey;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.core.contexts.RunAndTrack;
 import org.eclipse.e4.core.di.IInjector;
 import org.eclipse.e4.core.di.suppliers.IObjectDescriptor;
 import org.eclipse.e4.core.di.suppliers.IRequestor;
 import org.eclipse.e4.core.di.suppliers.PrimaryObjectSupplier;
+import org.eclipse.e4.core.internal.di.shared.DescriptorKeys;
 
 public class ContextObjectSupplier extends PrimaryObjectSupplier {
 
 	final static protected String ECLIPSE_CONTEXT_NAME = IEclipseContext.class.getName();
+	final static protected ContextKey ECLIPSE_CONTEXT_KEY = ContextKey.get(ECLIPSE_CONTEXT_NAME);
 
 	public static class ContextInjectionListener extends RunAndTrackExt {
 
 		// TBD Test
 		// Another line
 		final private Object[] result;
-		final private String[] keys;
+		final private ContextKey[] keys;
 		final private boolean[] active;
 		final private IRequestor requestor;
 		final private IEclipseContext context;
 
-		public ContextInjectionListener(IEclipseContext context, Object[] result, String[] keys, boolean[] active, IRequestor requestor, boolean group) {
+		public ContextInjectionListener(IEclipseContext context, Object[] result, ContextKey[] keys, boolean[] active, IRequestor requestor, boolean group) {
 			super(group);
 			this.result = result;
 			this.keys = keys;
@@ -51,7 +53,7 @@ public class ContextObjectSupplier extends PrimaryObjectSupplier {
 					if (keys[i] == null)
 						continue;
 					IEclipseContext targetContext = (active[i]) ? context.getActiveLeaf() : context;
-					if (ECLIPSE_CONTEXT_NAME.equals(keys[i])) {
+					if (keys[i] == ECLIPSE_CONTEXT_KEY) {
 						result[i] = targetContext;
 						targetContext.getParent(); // creates pseudo-link
 					} else if (targetContext.containsKey(keys[i]))
@@ -122,10 +124,14 @@ public class ContextObjectSupplier extends PrimaryObjectSupplier {
 
 	}
 
-	final private IEclipseContext context;
+	// computations paused on this thread, innermost last
+	final static private ThreadLocal<List<Computation>> pausedComputations = new ThreadLocal<List<Computation>>() {
+		protected List<Computation> initialValue() {
+			return new ArrayList<Computation>(4);
+		}
+	};
 
-	private Computation outerComputation;
-	private int paused = 0;
+	final private IEclipseContext context;
 
 	public ContextObjectSupplier(IEclipseContext context, IInjector injector) {
 		this.context = context;
@@ -137,35 +143,25 @@ public class ContextObjectSupplier extends PrimaryObjectSupplier {
 
 	@Override
 	public void get(IObjectDescriptor[] descriptors, Object[] actualArgs, final IRequestor requestor, boolean initial, boolean track, boolean group) {
-		final String[] keys = new String[descriptors.length];
-		final boolean[] active = new boolean[descriptors.length];
-
-		for (int i = 0; i < descriptors.length; i++) {
-			String key = getKey(descriptors[i]);
-			if ((actualArgs[i] == IInjector.NOT_A_VALUE))
-				keys[i] = key;
-			else if (ECLIPSE_CONTEXT_NAME.equals(key)) // allow provider to override IEclipseContext
-				keys[i] = ECLIPSE_CONTEXT_NAME;
-			else
-				keys[i] = null;
-			if (descriptors[i] == null)
-				active[i] = false;
-			else
-				active[i] = (descriptors[i].hasQualifier(Active.class));
-		}
-
 		if (requestor != null && track) { // only track if requested
 			if (initial) {
+				// the listener keeps the keys to look up the values when it runs
+				final ContextKey[] keys = new ContextKey[descriptors.length];
+				final boolean[] active = new boolean[descriptors.length];
+				for (int i = 0; i < descriptors.length; i++) {
+					keys[i] = getArgKey(descriptors[i], actualArgs[i]);
+					active[i] = isActive(descriptors[i]);
+				}
 				RunAndTrack trackable = new ContextInjectionListener(context, actualArgs, keys, active, requestor, group);
-				context.runAndTrack(trackable);
+				((EclipseContext) context).runAndTrack(trackable, requestor.getRequestingObject());
 			} else { // we do track if this is done inside a computation, but don't create another runnable
-				fillArgs(actualArgs, keys, active);
+				fillArgs(actualArgs, descriptors);
 			}
 		} else {
 			if (descriptors.length > 0) {
 				pauseRecording();
 				try {
-					fillArgs(actualArgs, keys, active);
+					fillArgs(actualArgs, descriptors);
 				} finally {
 					resumeRecoding();
 				}
@@ -173,50 +169,58 @@ public class ContextObjectSupplier extends PrimaryObjectSupplier {
 		}
 	}
 
-	private void fillArgs(Object[] actualArgs, String[] keys, boolean[] active) {
-		for (int i = 0; i < keys.length; i++) {
-			if (keys[i] == null)
+	/**
+	 * Fills in the values without allocating, as this is done each time tracked objects
+	 * are injected again.
+	 */
+	private void fillArgs(Object[] actualArgs, IObjectDescriptor[] descriptors) {
+		for (int i = 0; i < descriptors.length; i++) {
+			ContextKey key = getArgKey(descriptors[i], actualArgs[i]);
+			if (key == null)
 				continue;
-			IEclipseContext targetContext = (active[i]) ? context.getActiveLeaf() : context;
-			if (ECLIPSE_CONTEXT_NAME.equals(keys[i]))
+			IEclipseContext targetContext = isActive(descriptors[i]) ? context.getActiveLeaf() : context;
+			if (key == ECLIPSE_CONTEXT_KEY)
 				actualArgs[i] = targetContext;
-			else if (targetContext.containsKey(keys[i]))
-				actualArgs[i] = targetContext.get(keys[i]);
+			else if (targetContext.containsKey(key))
+				actualArgs[i] = targetContext.get(key);
 		}
 	}
 
-	private String getKey(IObjectDescriptor descriptor) {
-		if (descriptor.hasQualifier(Named.class)) {
-			Named namedAnnotation = descriptor.getQualifier(Named.class);
-			return namedAnnotation.value();
-		}
-		Type elementType = descriptor.getDesiredType();
-		return typeToString(elementType);
+	/**
+	 * Returns the key of the value to look up for the argument, or <code>null</code> if the
+	 * argument has already been resolved.
+	 */
+	private ContextKey getArgKey(IObjectDescriptor descriptor, Object actualArg) {
+		ContextKey key = getKey(descriptor);
+		if (actualArg == IInjector.NOT_A_VALUE)
+			return key;
+		if (key == ECLIPSE_CONTEXT_KEY) // allow provider to override IEclipseContext
+			return ECLIPSE_CONTEXT_KEY;
+		return null;
 	}
 
-	private String typeToString(Type type) {
-		if (type == null)
-			return null;
-		if (type instanceof Class<?>)
-			return ((Class<?>) type).getName();
-		if (type instanceof ParameterizedType) {
-			Type rawType = ((ParameterizedType) type).getRawType();
-			return typeToString(rawType);
-		}
-		return null;
+	private ContextKey getKey(IObjectDescriptor descriptor) {
+		String name = DescriptorKeys.getKeyName(descriptor);
+		return (name == null) ? null : ContextKey.get(name);
+	}
+
+	private boolean isActive(IObjectDescriptor descriptor) {
+		if (descriptor == null)
+			return false;
+		// @Active is neither @Named nor @Optional
+		if (!DescriptorKeys.mayHaveOtherQualifiers(descriptor))
+			return false;
+		return descriptor.hasQualifier(Active.class);
 	}
 
-	synchronized public void pauseRecording() {
-		if (paused == 0)
-			outerComputation = EclipseContext.localComputation().get();
+	public void pauseRecording() {
+		pausedComputations.get().add(EclipseContext.localComputation().get());
 		EclipseContext.localComputation().set(null);
-		paused++;
 	}
 
-	synchronized public void resumeRecoding() {
-		paused--;
-		if (paused == 0)
-			EclipseContext.localComputation().set(outerComputation);
+	public void resumeRecoding() {
+		List<Computation> paused = pausedComputations.get();
+		EclipseContext.localComputation().set(paused.remove(paused.size() - 1));
 	}
 
 	static public ContextObjectSupplier getObjectSupplier(IEclipseContext context, IInjector injector) {
@@ -19,10 +19,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.eclipse.e4.core.contexts.ContextKey;
 import org.eclipse.e4.core.contexts.IContextFunction;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.core.contexts.RunAndTrack;
 import org.eclipse.e4.core.internal.contexts.osgi.ContextDebugHelper;
+import org.eclipse.e4.core.internal.di.shared.WeakIdentityMap;
 
 /**
  * This implementation assumes that all contexts are of the class EclipseContext. The external
@@ -41,6 +44,9 @@ public class EclipseContext implements IEclipseContext {
 	 */
 	public static final String DEBUG_STRING = "debugString"; //$NON-NLS-1$
 
+	static final ContextKey PARENT_KEY = ContextKey.get(PARENT);
+	static final ContextKey DEBUG_STRING_KEY = ContextKey.get(DEBUG_STRING);
+
 	static class Scheduled {
 
 		public TrackableComputationExt runnable;
@@ -69,16 +75,40 @@ public class EclipseContext implements IEclipseContext {
 		}
 	}
 
+	/**
+	 * A cached result of looking up a key through the parent chain.
+	 */
+	static class Resolution {
+
+		// the ancestor that has a local value for the key, or null if the key is missing
+		final EclipseContext supplier;
+		// the lookup stamp at the time the lookup was started
+		final long stamp;
+
+		public Resolution(EclipseContext supplier, long stamp) {
+			this.supplier = supplier;
+			this.stamp = stamp;
+		}
+	}
+
+	static private volatile boolean cacheResolutions = true;
+
+	// upper bound on the cached resolutions per context; the cache is cleared when it is reached
+	static private final int MAX_RESOLUTIONS = 256;
+
 	static ThreadLocal<Computation> currentComputation = new ThreadLocal<Computation>();
 
-	private Map<String, Set<Computation>> listeners = Collections.synchronizedMap(new HashMap<String, Set<Computation>>());
+	// scheduled notifications deferred by the batch running on the current thread
+	static private ThreadLocal<List<Scheduled>> batch = new ThreadLocal<List<Scheduled>>();
 
-	final Map<String, ValueComputation> localValueComputations = Collections.synchronizedMap(new HashMap<String, ValueComputation>());
-	final Map<String, Object> localValues = Collections.synchronizedMap(new HashMap<String, Object>());
+	final private ListenerIndex listeners = new ListenerIndex();
+
+	final ContextKeyMap<ValueComputation> localValueComputations = new ContextKeyMap<ValueComputation>();
+	final ContextKeyMap<Object> localValues = new ContextKeyMap<Object>();
 
 	private final ILookupStrategy strategy;
 
-	private ArrayList<String> modifiable;
+	private ArrayList<ContextKey> modifiable;
 
 	private List<Computation> waiting; // list of Computations; null for all non-root entries
 
@@ -86,12 +116,29 @@ public class EclipseContext implements IEclipseContext {
 
 	private Set<IContextDisposalListener> notifyOnDisposal = new HashSet<IContextDisposalListener>();
 
+	// injected object -> computations injecting it from this context; created on demand
+	private WeakIdentityMap<Object, Set<Computation>> injectionListeners;
+
+	// ancestors supplying keys looked up from this context; created on demand
+	private volatile ConcurrentHashMap<ContextKey, Resolution> resolutions;
+
 	/**
 	 * A context key (value "activeChildContext") that identifies another {@link IEclipseContext}
 	 * that is a child of the context. The meaning of active is up to the application.
 	 */
 	public static final String ACTIVE_CHILD = "activeChildContext"; //$NON-NLS-1$
 
+	static final ContextKey ACTIVE_CHILD_KEY = ContextKey.get(ACTIVE_CHILD);
+
+	// the key computations depend on when they look up the active leaf
+	static final ContextKey ACTIVE_LEAF_KEY = ContextKey.get("org.eclipse.e4.core.internal.contexts.activeLeaf"); //$NON-NLS-1$
+
+	// the active leaf of this context; null if it has not been computed
+	private volatile EclipseContext activeLeaf;
+	// changed under the localValues monitor whenever the active leaf may have changed, so that
+	// a leaf computed concurrently with the change is not cached
+	private volatile int activeLeafStamp;
+
 	static private final IEclipseContextDebugger debugAddOn = ContextDebugHelper.getDebugger();
 
 	public EclipseContext(IEclipseContext parent, ILookupStrategy strategy) {
@@ -121,19 +168,27 @@ public class EclipseContext implements IEclipseContext {
 	}
 
 	public boolean containsKey(String name) {
-		return containsKey(name, false);
+		return containsKey(ContextKey.get(name), false);
+	}
+
+	public boolean containsKey(ContextKey key) {
+		return containsKey(key, false);
 	}
 
 	public boolean containsKey(String name, boolean localOnly) {
-		if (isSetLocally(name))
+		return containsKey(ContextKey.get(name), localOnly);
+	}
+
+	public boolean containsKey(ContextKey key, boolean localOnly) {
+		if (isSetLocally(key))
 			return true;
 		if (localOnly)
 			return false;
-		IEclipseContext parent = getParent();
-		if (parent != null && parent.containsKey(name))
+		EclipseContext parent = getParent();
+		if (parent != null && parent.containsKey(key))
 			return true;
 		if (strategy != null) {
-			if (strategy.containsKey(name, this))
+			if (strategy.containsKey(key.getName(), this))
 				return true;
 		}
 		return false;
@@ -168,11 +223,7 @@ public class EclipseContext implements IEclipseContext {
 
 		ContextChangeEvent event = new ContextChangeEvent(this, ContextChangeEvent.DISPOSE, null, null, null);
 		List<Scheduled> scheduled = new ArrayList<Scheduled>();
-		Set<Computation> allComputations = new HashSet<Computation>();
-		for (Set<Computation> computations : listeners.values()) {
-			allComputations.addAll(computations);
-		}
-		listeners.clear();
+		Set<Computation> allComputations = listeners.removeAll();
 		for (Computation computation : allComputations) {
 			computation.handleInvalid(event, scheduled);
 		}
@@ -192,10 +243,15 @@ public class EclipseContext implements IEclipseContext {
 		EclipseContext parent = getParent();
 		if (parent != null) {
 			if (this == parent.getActiveChild())
-				parent.set(ACTIVE_CHILD, null);
+				parent.set(ACTIVE_CHILD_KEY, null);
 		}
 
 		localValues.clear();
+		resolutions = null;
+		clearActiveLeaf();
+		synchronized (this) {
+			injectionListeners = null;
+		}
 
 		if (parent != null)
 			parent.removeChild(this);
@@ -205,30 +261,61 @@ public class EclipseContext implements IEclipseContext {
 	}
 
 	public Object get(String name) {
-		return internalGet(this, name, false);
+		return internalGet(this, ContextKey.get(name), false);
+	}
+
+	public Object get(ContextKey key) {
+		return internalGet(this, key, false);
 	}
 
 	public Object getLocal(String name) {
-		return internalGet(this, name, true);
+		return internalGet(this, ContextKey.get(name), true);
+	}
+
+	public Object getLocal(ContextKey key) {
+		return internalGet(this, key, true);
 	}
 
-	public Object internalGet(EclipseContext originatingContext, String name, boolean local) {
+	public Object internalGet(EclipseContext originatingContext, ContextKey name, boolean local) {
 		trackAccess(name);
 		if (this == originatingContext) {
 			ValueComputation valueComputation = localValueComputations.get(name);
 			if (valueComputation != null) {
 				return valueComputation.get();
 			}
+			if (!local && cacheResolutions) {
+				Resolution resolution = getResolution(name);
+				if (resolution != null) {
+					Object result = (resolution.supplier == null) ? null : resolution.supplier.localValues.lookup(name);
+					if (result != ContextKeyMap.NOT_FOUND && !(result instanceof IContextFunction)) {
+						if (currentComputation.get() != null)
+							trackResolution(name, resolution.supplier);
+						return result;
+					}
+				}
+				return lookup(originatingContext, name, false, LookupStamps.current(name));
+			}
 		}
+		return lookup(originatingContext, name, local, 0);
+	}
 
-		Object result = null;
+	/**
+	 * Looks up the name in this context and, unless local, in its ancestors. The stamp is used to
+	 * remember which ancestor supplied the value, or that there was none.
+	 */
+	private Object lookup(EclipseContext originatingContext, ContextKey name, boolean local, long stamp) {
 		// 1. try for local value
-		if (localValues.containsKey(name)) {
-			result = localValues.get(name);
+		Object result = localValues.lookup(name);
+		if (result == ContextKeyMap.NOT_FOUND) {
+			result = null;
+			if (strategy != null) // 2. try the local strategy
+				result = strategy.lookup(name.getName(), originatingContext);
+		} else {
+			if (!local && this != originatingContext && !(result instanceof IContextFunction))
+				originatingContext.rememberResolution(name, this, stamp);
 			if (result == null)
 				return null;
-		} else if (strategy != null) // 2. try the local strategy
-			result = strategy.lookup(name, originatingContext);
+		}
 
 		// if we found something, compute the concrete value and return
 		if (result != null) {
@@ -242,7 +329,7 @@ public class EclipseContext implements IEclipseContext {
 					valueComputation.addDependency(step, name);
 					if (step == this)
 						break;
-					valueComputation.addDependency(step, PARENT);
+					valueComputation.addDependency(step, PARENT_KEY);
 				}
 				result = valueComputation.get();
 			}
@@ -250,23 +337,80 @@ public class EclipseContext implements IEclipseContext {
 		}
 		// 3. delegate to parent
 		if (!local) {
-			IEclipseContext parent = (IEclipseContext) getLocal(PARENT);
+			EclipseContext parent = (EclipseContext) getLocal(PARENT_KEY);
 			if (parent != null) {
-				return ((EclipseContext) parent).internalGet(originatingContext, name, local);
+				parent.trackAccess(name);
+				return parent.lookup(originatingContext, name, local, stamp);
 			}
+			originatingContext.rememberResolution(name, null, stamp);
 		}
 		return null;
 	}
 
+	private Resolution getResolution(ContextKey name) {
+		ConcurrentHashMap<ContextKey, Resolution> current = resolutions;
+		if (current == null)
+			return null;
+		Resolution resolution = current.get(name);
+		if (resolution == null)
+			return null;
+		if (resolution.stamp != LookupStamps.current(name)) {
+			current.remove(name, resolution);
+			return null;
+		}
+		return resolution;
+	}
+
+	private void rememberResolution(ContextKey name, EclipseContext supplier, long stamp) {
+		if (!cacheResolutions)
+			return;
+		ConcurrentHashMap<ContextKey, Resolution> current = resolutions;
+		if (current == null) {
+			synchronized (localValues) {
+				current = resolutions;
+				if (current == null) {
+					current = new ConcurrentHashMap<ContextKey, Resolution>();
+					resolutions = current;
+				}
+			}
+		} else if (current.size() >= MAX_RESOLUTIONS)
+			current.clear();
+		current.put(name, new Resolution(supplier, stamp));
+	}
+
+	/**
+	 * Records the same dependencies as a lookup through the parent chain that ended at the given
+	 * supplier, or at the root if the supplier is <code>null</code>.
+	 */
+	private void trackResolution(ContextKey name, EclipseContext supplier) {
+		for (EclipseContext step = this; step != null; step = step.getParent()) {
+			step.trackAccess(name);
+			if (step == supplier)
+				break;
+		}
+	}
+
+	/**
+	 * Enables or disables caching of the ancestors that supply values looked up in contexts.
+	 * Intended for measurements; the cache is enabled by default.
+	 * @param enabled <code>true</code> to enable the cache
+	 */
+	static public void setCacheResolutions(boolean enabled) {
+		cacheResolutions = enabled;
+	}
+
 	/**
 	 * The given name has been modified or removed in this context. Invalidate all local value
 	 * computations and listeners that depend on this name.
 	 */
-	public void invalidate(String name, int eventType, Object oldValue, List<Scheduled> scheduled) {
+	public void invalidate(ContextKey name, int eventType, Object oldValue, List<Scheduled> scheduled) {
 		if (DebugHelper.DEBUG_NAMES)
 			System.out.println("[context] invalidating \"" + name + "\" on " + toString()); //$NON-NLS-1$ //$NON-NLS-2$
+		LookupStamps.keyChanged(name);
 		removeLocalValueComputations(name);
 		handleInvalid(name, eventType, oldValue, scheduled);
+		if (name == ACTIVE_CHILD_KEY)
+			activeChildChanged(scheduled);
 	}
 
 	/**
@@ -274,8 +418,8 @@ public class EclipseContext implements IEclipseContext {
 	 * changed directly, or the value is a function that has been invalidated (one of the function's
 	 * dependencies has changed).
 	 */
-	void handleInvalid(String name, int eventType, Object oldValue, List<Scheduled> scheduled) {
-		Set<Computation> computations = listeners.remove(name);
+	void handleInvalid(ContextKey name, int eventType, Object oldValue, List<Scheduled> scheduled) {
+		Set<Computation> computations = listeners.removeName(name);
 		if (computations == null)
 			return;
 		ContextChangeEvent event = new ContextChangeEvent(this, eventType, null, name, oldValue);
@@ -284,12 +428,16 @@ public class EclipseContext implements IEclipseContext {
 		}
 	}
 
-	private boolean isSetLocally(String name) {
+	private boolean isSetLocally(ContextKey name) {
 		trackAccess(name);
 		return localValues.containsKey(name);
 	}
 
 	public void remove(String name) {
+		remove(ContextKey.get(name));
+	}
+
+	public void remove(ContextKey name) {
 		if (isSetLocally(name)) {
 			Object oldValue = localValues.remove(name);
 			List<Scheduled> scheduled = new ArrayList<Scheduled>();
@@ -302,7 +450,7 @@ public class EclipseContext implements IEclipseContext {
 	 * Removes all local value computations associated with the given name.
 	 * @param name The name to remove
 	 */
-	public void removeLocalValueComputations(String name) {
+	public void removeLocalValueComputations(ContextKey name) {
 		synchronized (localValueComputations) {
 			ValueComputation removed = localValueComputations.remove(name);
 			if (removed != null)
@@ -316,28 +464,78 @@ public class EclipseContext implements IEclipseContext {
 		computation.update(event);
 	}
 
+	/**
+	 * Executes a runnable that injects the given object from this context. The runnable
+	 * will be notified when the object is un-injected from this context.
+	 * @see #removeListenersTo(Object)
+	 */
+	public void runAndTrack(final RunAndTrack runnable, Object injectedObject) {
+		ContextChangeEvent event = new ContextChangeEvent(this, ContextChangeEvent.INITIAL, null, null, null);
+		TrackableComputationExt computation = new TrackableComputationExt(runnable, this);
+		if (!computation.update(event) || injectedObject == null)
+			return;
+		synchronized (this) {
+			if (injectionListeners == null)
+				injectionListeners = new WeakIdentityMap<Object, Set<Computation>>();
+			Set<Computation> computations = injectionListeners.get(injectedObject);
+			if (computations == null) {
+				computations = new HashSet<Computation>(4);
+				injectionListeners.put(injectedObject, computations);
+			}
+			computations.add(computation);
+		}
+	}
+
+	/**
+	 * Runs scheduled computations. A computation scheduled for several value changes, for
+	 * instance because it depends on several of the changed names, is only run once, in the
+	 * order in which it was first scheduled. Structural events are always delivered.
+	 */
 	protected void processScheduled(List<Scheduled> scheduledList) {
-		HashSet<Scheduled> sent = new HashSet<Scheduled>(scheduledList.size());
-		for (Iterator<Scheduled> i = scheduledList.iterator(); i.hasNext();) {
-			Scheduled scheduled = i.next();
-			// don't send the same event twice
-			if (!sent.add(scheduled))
+		int size = scheduledList.size();
+		if (size == 0)
+			return;
+		List<Scheduled> deferred = batch.get();
+		if (deferred != null) {
+			deferred.addAll(scheduledList);
+			return;
+		}
+		if (size == 1) {
+			Scheduled scheduled = scheduledList.get(0);
+			scheduled.runnable.update(scheduled.event);
+			return;
+		}
+		HashSet<TrackableComputationExt> changed = new HashSet<TrackableComputationExt>(size * 2);
+		HashSet<Scheduled> sent = new HashSet<Scheduled>(size * 2);
+		for (Scheduled scheduled : scheduledList) {
+			int eventType = scheduled.event.getEventType();
+			boolean valueChange = (eventType == ContextChangeEvent.ADDED || eventType == ContextChangeEvent.REMOVED || eventType == ContextChangeEvent.UPDATE);
+			if (valueChange ? !changed.add(scheduled.runnable) : !sent.add(scheduled))
 				continue;
 			scheduled.runnable.update(scheduled.event);
 		}
 	}
 
 	public void set(String name, Object value) {
+		set(ContextKey.get(name), value);
+	}
+
+	public void set(ContextKey name, Object value) {
 		if (DebugHelper.DEBUG_NAMES)
 			System.out.println("[context] set(" + name + ',' + value + ")" + " on " + toString());//$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 
-		if (PARENT.equals(name)) {
+		if (name == PARENT_KEY) {
 			setParent((IEclipseContext) value);
 			return;
 		}
-		boolean containsKey = localValues.containsKey(name);
-		Object oldValue = localValues.put(name, value);
-		if (!containsKey || value != oldValue) {
+		Object oldValue;
+		synchronized (localValues) {
+			oldValue = localValues.lookup(name);
+			localValues.put(name, value);
+		}
+		if (oldValue == ContextKeyMap.NOT_FOUND || value != oldValue) {
+			if (oldValue == ContextKeyMap.NOT_FOUND)
+				oldValue = null;
 			List<Scheduled> scheduled = new ArrayList<Scheduled>();
 			invalidate(name, ContextChangeEvent.ADDED, oldValue, scheduled);
 			processScheduled(scheduled);
@@ -345,13 +543,17 @@ public class EclipseContext implements IEclipseContext {
 	}
 
 	public void modify(String name, Object value) {
+		modify(ContextKey.get(name), value);
+	}
+
+	public void modify(ContextKey name, Object value) {
 		List<Scheduled> scheduled = new ArrayList<Scheduled>();
 		if (!internalModify(name, value, scheduled))
 			set(name, value);
 		processScheduled(scheduled);
 	}
 
-	public boolean internalModify(String name, Object value, List<Scheduled> scheduled) {
+	public boolean internalModify(ContextKey name, Object value, List<Scheduled> scheduled) {
 		boolean containsKey = localValues.containsKey(name);
 		if (containsKey) {
 			if (!checkModifiable(name)) {
@@ -371,21 +573,33 @@ public class EclipseContext implements IEclipseContext {
 	}
 
 	public EclipseContext getParent() {
-		trackAccess(PARENT);
-		return (EclipseContext) localValues.get(PARENT);
+		trackAccess(PARENT_KEY);
+		return (EclipseContext) localValues.get(PARENT_KEY);
 	}
 
 	public void setParent(IEclipseContext parent) {
-		EclipseContext parentContext = (EclipseContext) localValues.get(PARENT);
+		EclipseContext parentContext = (EclipseContext) localValues.get(PARENT_KEY);
 		if (parent == parentContext)
 			return; // no-op
-		if (parentContext != null)
+		if (parentContext != null) {
+			// the old parent's active chain can't lead through a context that is no longer its child
+			if (parentContext.localValues.get(ACTIVE_CHILD_KEY) == this)
+				parentContext.set(ACTIVE_CHILD_KEY, null);
 			parentContext.removeChild(this);
+		}
 		List<Scheduled> scheduled = new ArrayList<Scheduled>();
 		handleReparent((EclipseContext) parent, scheduled);
-		localValues.put(PARENT, parent);
-		if (parent != null)
+		localValues.put(PARENT_KEY, parent);
+		// cached lookups of descendants go through this context
+		resolutions = null;
+		if (children.size() > 0)
+			LookupStamps.topologyChanged();
+		if (parent != null) {
 			((EclipseContext) parent).addChild(this);
+			// the active chain of the new parent may already lead through this context
+			if (((EclipseContext) parent).localValues.get(ACTIVE_CHILD_KEY) == this)
+				((EclipseContext) parent).activeChildChanged(scheduled);
+		}
 		processScheduled(scheduled);
 		return;
 	}
@@ -394,11 +608,11 @@ public class EclipseContext implements IEclipseContext {
 	 * Returns a string representation of this context for debugging purposes only.
 	 */
 	public String toString() {
-		Object debugString = localValues.get(DEBUG_STRING);
+		Object debugString = localValues.get(DEBUG_STRING_KEY);
 		return debugString instanceof String ? ((String) debugString) : "Anonymous Context"; //$NON-NLS-1$
 	}
 
-	private void trackAccess(String name) {
+	private void trackAccess(ContextKey name) {
 		Computation computation = currentComputation.get();
 		if (computation != null) {
 			computation.addDependency(this, name);
@@ -406,22 +620,28 @@ public class EclipseContext implements IEclipseContext {
 	}
 
 	public void declareModifiable(String name) {
+		if (name == null)
+			return;
+		declareModifiable(ContextKey.get(name));
+	}
+
+	public void declareModifiable(ContextKey name) {
 		if (name == null)
 			return;
 		if (modifiable == null)
-			modifiable = new ArrayList<String>(3);
+			modifiable = new ArrayList<ContextKey>(3);
 		modifiable.add(name);
 		if (localValues.containsKey(name))
 			return;
 		localValues.put(name, null);
+		LookupStamps.keyChanged(name);
 	}
 
-	private boolean checkModifiable(String name) {
+	private boolean checkModifiable(ContextKey name) {
 		if (modifiable == null)
 			return false;
-		for (Iterator<String> i = modifiable.iterator(); i.hasNext();) {
-			String candidate = i.next();
-			if (candidate.equals(name))
+		for (Iterator<ContextKey> i = modifiable.iterator(); i.hasNext();) {
+			if (i.next() == name)
 				return true;
 		}
 		return false;
@@ -430,12 +650,18 @@ public class EclipseContext implements IEclipseContext {
 	public void removeListenersTo(Object object) {
 		if (object == null)
 			return;
+		Set<Computation> computations;
+		synchronized (this) {
+			if (injectionListeners == null)
+				return;
+			computations = injectionListeners.remove(object);
+		}
+		if (computations == null)
+			return;
 		ContextChangeEvent event = new ContextChangeEvent(this, ContextChangeEvent.UNINJECTED, new Object[] {object}, null, null);
 		// TBD computation here removes listeners. We should do that inside this method instead
-		Set<Computation> computations = getListeners();
-		Computation[] ls = computations.toArray(new Computation[computations.size()]);
-		for (Computation computation : ls) {
-			if (computation instanceof TrackableComputationExt)
+		for (Computation computation : computations) {
+			if (listeners.contains(computation))
 				((TrackableComputationExt) computation).update(event);
 		}
 	}
@@ -445,15 +671,14 @@ public class EclipseContext implements IEclipseContext {
 		// Add "boolean inReparent" on the root context and process right away?
 		processWaiting();
 		// 1) everybody who depends on me: I need to collect combined list of names injected
-		Set<String> tmp = listeners.keySet(); // clone internal name list
-		Set<String> usedNames = new HashSet<String>(tmp.size());
-		usedNames.addAll(tmp);
+		ContextKey[] usedNames = listeners.getNames(); // clone internal name list
 
 		// 2) for each used name:
-		for (Iterator<String> i = usedNames.iterator(); i.hasNext();) {
-			String name = i.next();
+		for (ContextKey name : usedNames) {
 			if (localValues.containsKey(name))
 				continue; // it is a local value
+			if (name == ACTIVE_LEAF_KEY)
+				continue; // not a value; the active leaf does not depend on the parent
 			Object oldValue = get(name);
 			Object newValue = (newParent != null) ? newParent.get(name) : null;
 			if (oldValue != newValue)
@@ -481,6 +706,21 @@ public class EclipseContext implements IEclipseContext {
 		}
 	}
 
+	public void runBatch(Runnable runnable) {
+		if (batch.get() != null) {
+			runnable.run();
+			return;
+		}
+		List<Scheduled> deferred = new ArrayList<Scheduled>();
+		batch.set(deferred);
+		try {
+			runnable.run();
+		} finally {
+			batch.set(null);
+			processScheduled(deferred);
+		}
+	}
+
 	public void addWaiting(Computation cp) {
 		// traverse to the root node
 		EclipseContext parent = getParent();
@@ -526,31 +766,31 @@ public class EclipseContext implements IEclipseContext {
 	}
 
 	public <T> T get(Class<T> clazz) {
-		return clazz.cast(get(clazz.getName()));
+		return clazz.cast(get(ContextKey.get(clazz)));
 	}
 
 	public boolean containsKey(Class<?> clazz) {
-		return containsKey(clazz.getName());
+		return containsKey(ContextKey.get(clazz));
 	}
 
 	public <T> void set(Class<T> clazz, T value) {
-		set(clazz.getName(), value);
+		set(ContextKey.get(clazz), value);
 	}
 
 	public void remove(Class<?> clazz) {
-		remove(clazz.getName());
+		remove(ContextKey.get(clazz));
 	}
 
 	public <T> T getLocal(Class<T> clazz) {
-		return clazz.cast(getLocal(clazz.getName()));
+		return clazz.cast(getLocal(ContextKey.get(clazz)));
 	}
 
 	public <T> void modify(Class<T> clazz, T value) {
-		modify(clazz.getName(), value);
+		modify(ContextKey.get(clazz), value);
 	}
 
 	public void declareModifiable(Class<?> clazz) {
-		declareModifiable(clazz.getName());
+		declareModifiable(ContextKey.get(clazz));
 	}
 
 	public IEclipseContext createChild() {
@@ -559,7 +799,7 @@ public class EclipseContext implements IEclipseContext {
 
 	public IEclipseContext createChild(String name) {
 		IEclipseContext result = createChild();
-		result.set(DEBUG_STRING, name);
+		result.set(DEBUG_STRING_KEY, name);
 		return result;
 	}
 
@@ -574,17 +814,62 @@ public class EclipseContext implements IEclipseContext {
 	}
 
 	public IEclipseContext getActiveChild() {
-		return (EclipseContext) internalGet(this, ACTIVE_CHILD, true);
+		return (EclipseContext) internalGet(this, ACTIVE_CHILD_KEY, true);
 	}
 
+	/**
+	 * Returns the active leaf. The leaf is cached and computations looking it up depend on
+	 * a single key that is only invalidated when the leaf changes.
+	 */
 	public IEclipseContext getActiveLeaf() {
-		IEclipseContext activeContext = this;
-		IEclipseContext child = getActiveChild();
-		while (child != null) {
-			activeContext = child;
-			child = child.getActiveChild();
+		trackAccess(ACTIVE_LEAF_KEY);
+		return internalGetActiveLeaf();
+	}
+
+	private EclipseContext internalGetActiveLeaf() {
+		EclipseContext leaf = activeLeaf;
+		if (leaf != null)
+			return leaf;
+		int stamp = activeLeafStamp;
+		Object child = localValues.get(ACTIVE_CHILD_KEY);
+		leaf = (child instanceof EclipseContext) ? ((EclipseContext) child).internalGetActiveLeaf() : this;
+		synchronized (localValues) {
+			if (stamp == activeLeafStamp)
+				activeLeaf = leaf;
+		}
+		return leaf;
+	}
+
+	/**
+	 * Clears the cached active leaf and returns the previous one.
+	 */
+	private EclipseContext clearActiveLeaf() {
+		synchronized (localValues) {
+			EclipseContext oldLeaf = activeLeaf;
+			activeLeafStamp++;
+			activeLeaf = null;
+			return oldLeaf;
+		}
+	}
+
+	/**
+	 * The active child of this context has changed. Updates the active leaf of this context
+	 * and of the ancestors whose active chain leads through it.
+	 */
+	private void activeChildChanged(List<Scheduled> scheduled) {
+		// the leaf of each ancestor is computed again from the leaf of its active child, so that
+		// concurrent changes along the chain can't leave an ancestor with an outdated leaf
+		EclipseContext context = this;
+		while (true) {
+			EclipseContext oldLeaf = context.clearActiveLeaf();
+			if (oldLeaf == context.internalGetActiveLeaf())
+				break;
+			context.handleInvalid(ACTIVE_LEAF_KEY, ContextChangeEvent.ADDED, oldLeaf, scheduled);
+			EclipseContext parent = (EclipseContext) context.localValues.get(PARENT_KEY);
+			if (parent == null || parent.localValues.get(ACTIVE_CHILD_KEY) != context)
+				break;
+			context = parent;
 		}
-		return activeContext;
 	}
 
 	public void activate() {
@@ -593,13 +878,43 @@ public class EclipseContext implements IEclipseContext {
 			return;
 		if (this == parent.getActiveChild())
 			return;
-		parent.set(ACTIVE_CHILD, this);
+		parent.set(ACTIVE_CHILD_KEY, this);
 	}
 
+	/**
+	 * Activates the whole branch as one change. The active children of all ancestors are
+	 * updated before any computation is notified, so listeners run once with the final state.
+	 */
 	public void activateBranch() {
-		for (IEclipseContext i = this; i != null; i = i.getParent()) {
-			i.activate();
+		List<EclipseContext> changed = null;
+		List<Object> oldValues = null;
+		EclipseContext child = this;
+		EclipseContext parent = (EclipseContext) localValues.get(PARENT_KEY);
+		while (parent != null) {
+			Object oldValue;
+			synchronized (parent.localValues) {
+				oldValue = parent.localValues.lookup(ACTIVE_CHILD_KEY);
+				if (oldValue != child)
+					parent.localValues.put(ACTIVE_CHILD_KEY, child);
+			}
+			if (oldValue != child) {
+				if (changed == null) {
+					changed = new ArrayList<EclipseContext>();
+					oldValues = new ArrayList<Object>();
+				}
+				changed.add(parent);
+				oldValues.add((oldValue == ContextKeyMap.NOT_FOUND) ? null : oldValue);
+			}
+			child = parent;
+			parent = (EclipseContext) parent.localValues.get(PARENT_KEY);
 		}
+		if (changed == null)
+			return;
+		// invalidate from the top so that merged notifications report the topmost change
+		List<Scheduled> scheduled = new ArrayList<Scheduled>();
+		for (int i = changed.size() - 1; i >= 0; i--)
+			changed.get(i).invalidate(ACTIVE_CHILD_KEY, ContextChangeEvent.ADDED, oldValues.get(i), scheduled);
+		processScheduled(scheduled);
 	}
 
 	public void deactivate() {
@@ -608,17 +923,17 @@ public class EclipseContext implements IEclipseContext {
 			return;
 		if (this != parent.getActiveChild())
 			return; // this is not an active context; return 
-		parent.set(ACTIVE_CHILD, null);
+		parent.set(ACTIVE_CHILD_KEY, null);
 	}
 
 	// This method is for debug only, do not use externally
 	public Map<String, Object> localData() {
 		Map<String, Object> result = new HashMap<String, Object>(localValues.size());
-		for (String string : localValues.keySet()) {
-			Object value = localValues.get(string);
+		for (ContextKey key : localValues.keys()) {
+			Object value = localValues.get(key);
 			if (value instanceof IContextFunction)
 				continue;
-			result.put(string, value);
+			result.put(key.getName(), value);
 		}
 		return result;
 	}
@@ -626,10 +941,10 @@ public class EclipseContext implements IEclipseContext {
 	// This method is for debug only, do not use externally
 	public Map<String, Object> localContextFunction() {
 		Map<String, Object> result = new HashMap<String, Object>(localValues.size());
-		for (String string : localValues.keySet()) {
-			Object value = localValues.get(string);
+		for (ContextKey key : localValues.keys()) {
+			Object value = localValues.get(key);
 			if (value instanceof IContextFunction)
-				result.put(string, value);
+				result.put(key.getName(), value);
 		}
 		return result;
 	}
@@ -637,54 +952,48 @@ public class EclipseContext implements IEclipseContext {
 	// This method is for debug only, do not use externally
 	public Map<String, Object> cachedCachedContextFunctions() {
 		Map<String, Object> result = new HashMap<String, Object>(localValueComputations.size());
-		for (String string : localValueComputations.keySet()) {
-			result.put(string, localValueComputations.get(string).get());
+		for (ContextKey key : localValueComputations.keys()) {
+			ValueComputation computation = localValueComputations.get(key);
+			if (computation != null)
+				result.put(key.getName(), computation.get());
 		}
 		return result;
 	}
 
 	// This method is for debug only, do not use externally
 	public Set<String> getRawListenerNames() {
-		Set<String> tmp = listeners.keySet(); // clone internal name list
-		Set<String> usedNames = new HashSet<String>(tmp.size());
-		usedNames.addAll(tmp);
+		ContextKey[] tmp = listeners.getNames(); // clone internal name list
+		Set<String> usedNames = new HashSet<String>(tmp.length);
+		for (ContextKey key : tmp) {
+			if (key != ACTIVE_LEAF_KEY)
+				usedNames.add(key.getName());
+		}
 		return usedNames;
 	}
 
 	// This method is for debug only, do not use externally
 	public Set<Computation> getListeners(String name) {
-		Set<Computation> tmp = listeners.get(name);
-		Set<Computation> result = new HashSet<Computation>(tmp.size());
-		result.addAll(tmp);
-		return result;
+		return listeners.getComputations(ContextKey.get(name));
 	}
 
-	public void addListener(Computation computation, Set<String> names) {
-		for (String name : names) {
-			if (listeners.containsKey(name)) {
-				Set<Computation> existingDependencies = listeners.get(name);
-				existingDependencies.add(computation);
-			} else {
-				Set<Computation> computations = new HashSet<Computation>();
-				computations.add(computation);
-				listeners.put(name, computations);
-			}
-		}
+	public void addListener(Computation computation, KeySet names) {
+		listeners.add(computation, names);
+	}
+
+	public void addListener(Computation computation, ContextKey name) {
+		listeners.add(computation, name);
 	}
 
 	public void removeListener(Computation computation) {
-		for (Map.Entry<String, Set<Computation>> entry : listeners.entrySet()) {
-			Set<Computation> computations = entry.getValue();
-			computations.remove(computation);
-		}
+		listeners.remove(computation);
+	}
+
+	public void removeListener(Computation computation, ContextKey name) {
+		listeners.remove(computation, name);
 	}
 
 	public Set<Computation> getListeners() {
-		Set<Computation> computations = new HashSet<Computation>();
-		for (Map.Entry<String, Set<Computation>> entry : listeners.entrySet()) {
-			computations.addAll(entry.getValue());
-		}
-		return computations;
+		return listeners.getComputations();
 	}
 
 }
@@ -18,6 +18,12 @@ import org.eclipse.e4.core.contexts.IEclipseContext;
  * in a context. The lookup strategy is consulted by the context after
  * looking for an already defined local value, but before delegating lookup
  * to a parent context.
+ * <p>
+ * Contexts remember names for which lookup failed. Strategies must call
+ * {@link LookupStamps#keyChanged(String)} when they may start returning a
+ * value for a name for which they previously returned <code>null</code>,
+ * unless they set the value into the originating context themselves.
+ * </p>
  */
 public interface ILookupStrategy {
 	/**
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.contexts;
+
+import org.eclipse.e4.core.contexts.ContextKey;
+
+/**
+ * A compact set of context keys. Small sets are kept in an array that is scanned linearly;
+ * larger sets switch to an open addressing table probed by key id.
+ * <p>
+ * This class is not synchronized.
+ * </p>
+ */
+final class KeySet {
+
+	final private static int INITIAL_CAPACITY = 4;
+	final private static int MAX_LINEAR = 8;
+
+	// in linear mode the first size slots are used; in hashed mode slots may be null
+	private ContextKey[] keys;
+	private int size;
+	private boolean hashed;
+
+	public KeySet() {
+		keys = new ContextKey[INITIAL_CAPACITY];
+	}
+
+	public boolean add(ContextKey key) {
+		if (hashed) {
+			int length = keys.length;
+			int i = ContextKeyMap.indexFor(key, length);
+			for (; keys[i] != null; i = (i + 1) & (length - 1)) {
+				if (keys[i] == key)
+					return false;
+			}
+			if ((size + 1) * 2 > length) {
+				rehash(length * 2);
+				insert(keys, key);
+			} else
+				keys[i] = key;
+			size++;
+			return true;
+		}
+		for (int i = 0; i < size; i++) {
+			if (keys[i] == key)
+				return false;
+		}
+		if (size == MAX_LINEAR) {
+			rehash(MAX_LINEAR * 4);
+			insert(keys, key);
+			size++;
+			return true;
+		}
+		if (size == keys.length) {
+			ContextKey[] newKeys = new ContextKey[keys.length * 2];
+			System.arraycopy(keys, 0, newKeys, 0, size);
+			keys = newKeys;
+		}
+		keys[size++] = key;
+		return true;
+	}
+
+	public boolean contains(ContextKey key) {
+		return indexOf(key) != -1;
+	}
+
+	public boolean remove(ContextKey key) {
+		int index = indexOf(key);
+		if (index == -1)
+			return false;
+		size--;
+		if (!hashed) {
+			keys[index] = keys[size];
+			keys[size] = null;
+			return true;
+		}
+		// backward shift deletion keeps probe sequences intact without tombstones
+		int length = keys.length;
+		int hole = index;
+		for (int i = (index + 1) & (length - 1); keys[i] != null; i = (i + 1) & (length - 1)) {
+			int home = ContextKeyMap.indexFor(keys[i], length);
+			if (((i - home) & (length - 1)) >= ((i - hole) & (length - 1))) {
+				keys[hole] = keys[i];
+				hole = i;
+			}
+		}
+		keys[hole] = null;
+		return true;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the number of slots that can be iterated with {@link #slot(int)}.
+	 */
+	public int slots() {
+		return hashed ? keys.length : size;
+	}
+
+	/**
+	 * Returns the key in the given slot, or <code>null</code> if the slot is empty.
+	 */
+	public ContextKey slot(int index) {
+		return keys[index];
+	}
+
+	/**
+	 * Returns the keys in this set. The array is a copy and has no <code>null</code> entries.
+	 */
+	public ContextKey[] toArray() {
+		ContextKey[] result = new ContextKey[size];
+		if (!hashed) {
+			System.arraycopy(keys, 0, result, 0, size);
+			return result;
+		}
+		int pos = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != null)
+				result[pos++] = keys[i];
+		}
+		return result;
+	}
+
+	private int indexOf(ContextKey key) {
+		if (!hashed) {
+			for (int i = 0; i < size; i++) {
+				if (keys[i] == key)
+					return i;
+			}
+			return -1;
+		}
+		int length = keys.length;
+		for (int i = ContextKeyMap.indexFor(key, length); keys[i] != null; i = (i + 1) & (length - 1)) {
+			if (keys[i] == key)
+				return i;
+		}
+		return -1;
+	}
+
+	private void rehash(int capacity) {
+		ContextKey[] newKeys = new ContextKey[capacity];
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != null)
+				insert(newKeys, keys[i]);
+		}
+		keys = newKeys;
+		hashed = true;
+	}
+
+	private static void insert(ContextKey[] table, ContextKey key) {
+		int length = table.length;
+		int i = ContextKeyMap.indexFor(key, length);
+		while (table[i] != null)
+			i = (i + 1) & (length - 1);
+		table[i] = key;
+	}
+}
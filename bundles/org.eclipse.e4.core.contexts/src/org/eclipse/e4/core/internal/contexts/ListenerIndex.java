@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.contexts;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.e4.core.contexts.ContextKey;
+
+/**
+ * The computations listening to names in a context, indexed both by name and by computation
+ * so that adding or removing a single dependency does not depend on the number of names
+ * or computations in the context.
+ */
+class ListenerIndex {
+
+	final private Map<ContextKey, Set<Computation>> byName = new HashMap<ContextKey, Set<Computation>>();
+	final private Map<Computation, KeySet> byComputation = new HashMap<Computation, KeySet>();
+
+	synchronized public void add(Computation computation, KeySet names) {
+		KeySet computationNames = byComputation.get(computation);
+		if (computationNames == null) {
+			computationNames = new KeySet();
+			byComputation.put(computation, computationNames);
+		}
+		for (int i = 0; i < names.slots(); i++) {
+			ContextKey name = names.slot(i);
+			if (name == null || !computationNames.add(name))
+				continue;
+			Set<Computation> computations = byName.get(name);
+			if (computations == null) {
+				computations = new HashSet<Computation>(4);
+				byName.put(name, computations);
+			}
+			computations.add(computation);
+		}
+	}
+
+	synchronized public void add(Computation computation, ContextKey name) {
+		KeySet computationNames = byComputation.get(computation);
+		if (computationNames == null) {
+			computationNames = new KeySet();
+			byComputation.put(computation, computationNames);
+		}
+		if (!computationNames.add(name))
+			return;
+		Set<Computation> computations = byName.get(name);
+		if (computations == null) {
+			computations = new HashSet<Computation>(4);
+			byName.put(name, computations);
+		}
+		computations.add(computation);
+	}
+
+	/**
+	 * Removes all dependencies of the computation.
+	 */
+	synchronized public void remove(Computation computation) {
+		KeySet names = byComputation.remove(computation);
+		if (names == null)
+			return;
+		for (ContextKey name : names.toArray())
+			removeFromName(name, computation);
+	}
+
+	/**
+	 * Removes a single dependency of the computation.
+	 */
+	synchronized public void remove(Computation computation, ContextKey name) {
+		KeySet names = byComputation.get(computation);
+		if (names == null || !names.remove(name))
+			return;
+		if (names.isEmpty())
+			byComputation.remove(computation);
+		removeFromName(name, computation);
+	}
+
+	/**
+	 * Removes the name and returns the computations that were listening to it,
+	 * or <code>null</code> if there were none.
+	 */
+	synchronized public Set<Computation> removeName(ContextKey name) {
+		Set<Computation> computations = byName.remove(name);
+		if (computations == null)
+			return null;
+		for (Computation computation : computations) {
+			KeySet names = byComputation.get(computation);
+			if (names == null)
+				continue;
+			names.remove(name);
+			if (names.isEmpty())
+				byComputation.remove(computation);
+		}
+		return computations;
+	}
+
+	/**
+	 * Removes all dependencies and returns the computations that had any.
+	 */
+	synchronized public Set<Computation> removeAll() {
+		Set<Computation> result = new HashSet<Computation>(byComputation.keySet());
+		byComputation.clear();
+		byName.clear();
+		return result;
+	}
+
+	synchronized public boolean contains(Computation computation) {
+		return byComputation.containsKey(computation);
+	}
+
+	synchronized public Set<Computation> getComputations() {
+		return new HashSet<Computation>(byComputation.keySet());
+	}
+
+	synchronized public Set<Computation> getComputations(ContextKey name) {
+		Set<Computation> computations = byName.get(name);
+		return (computations == null) ? null : new HashSet<Computation>(computations);
+	}
+
+	synchronized public ContextKey[] getNames() {
+		return byName.keySet().toArray(new ContextKey[byName.size()]);
+	}
+
+	private void removeFromName(ContextKey name, Computation computation) {
+		Set<Computation> computations = byName.get(name);
+		if (computations == null)
+			return;
+		computations.remove(computation);
+		if (computations.isEmpty())
+			byName.remove(name);
+	}
+}
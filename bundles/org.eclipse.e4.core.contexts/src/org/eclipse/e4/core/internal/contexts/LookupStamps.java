@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.contexts;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.eclipse.e4.core.contexts.ContextKey;
+
+/**
+ * Modification stamps used to validate cached lookup results. Each key has a stamp that
+ * changes whenever a value for the key is set or removed in any context, or whenever a lookup
+ * strategy may start returning a different result for the key. A separate topology stamp
+ * changes whenever a context with children is re-parented.
+ */
+final public class LookupStamps {
+
+	static private volatile AtomicIntegerArray keyStamps = new AtomicIntegerArray(256);
+	static private final AtomicInteger topology = new AtomicInteger();
+
+	private LookupStamps() {
+		// prevents instantiations
+	}
+
+	/**
+	 * Returns the combined key and topology stamp for the key.
+	 */
+	static public long current(ContextKey key) {
+		AtomicIntegerArray stamps = keyStamps;
+		int id = key.getId();
+		int keyStamp = (id < stamps.length()) ? stamps.get(id) : 0;
+		return ((long) topology.get() << 32) | (keyStamp & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Invalidates cached lookups of the key in all contexts.
+	 */
+	synchronized static public void keyChanged(ContextKey key) {
+		int id = key.getId();
+		AtomicIntegerArray stamps = keyStamps;
+		if (id >= stamps.length()) {
+			int length = stamps.length();
+			while (id >= length)
+				length *= 2;
+			AtomicIntegerArray newStamps = new AtomicIntegerArray(length);
+			for (int i = 0; i < stamps.length(); i++)
+				newStamps.set(i, stamps.get(i));
+			keyStamps = newStamps;
+			stamps = newStamps;
+		}
+		stamps.incrementAndGet(id);
+	}
+
+	/**
+	 * Invalidates cached lookups of the key in all contexts.
+	 */
+	static public void keyChanged(String name) {
+		keyChanged(ContextKey.get(name));
+	}
+
+	/**
+	 * Invalidates all cached lookups that depend on the shape of the context tree.
+	 */
+	static public void topologyChanged() {
+		topology.incrementAndGet();
+	}
+}
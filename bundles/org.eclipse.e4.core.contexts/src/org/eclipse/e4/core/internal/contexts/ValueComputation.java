@@ -10,7 +10,10 @@
  *******************************************************************************/
 package org.eclipse.e4.core.internal.contexts;
 
+import java.util.ArrayList;
 import java.util.List;
+import org.eclipse.e4.core.contexts.ComparingContextFunction;
+import org.eclipse.e4.core.contexts.ContextKey;
 import org.eclipse.e4.core.contexts.IContextFunction;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.core.internal.contexts.EclipseContext.Scheduled;
@@ -35,15 +38,36 @@ public class ValueComputation extends Computation {
 		}
 	}
 
-	private Object cachedValue;
+	// computations being evaluated on the current thread; used for cycle detection
+	static private ThreadLocal<List<ValueComputation>> computing = new ThreadLocal<List<ValueComputation>>() {
+		protected List<ValueComputation> initialValue() {
+			return new ArrayList<ValueComputation>(4);
+		}
+	};
+
+	/**
+	 * A computed value. The value and its validity are published together.
+	 */
+	static private final class Result {
+		final Object value;
+
+		Result(Object value) {
+			this.value = value;
+		}
+	}
+
+	// the valid value, or null if the value needs to be computed
+	private volatile Result result;
+	// changed under the monitor each time the value is invalidated
+	private volatile int invalidations;
 	private IEclipseContext context;
-	private String name;
-	private boolean valid;
+	private ContextKey name;
+	// true once dependents have been invalidated for the current invalid state
+	private volatile boolean propagated;
 	private IContextFunction function;
 	private EclipseContext originatingContext;
-	private boolean computing; // cycle detection
 
-	public ValueComputation(IEclipseContext context, IEclipseContext originatingContext, String name, IContextFunction computedValue) {
+	public ValueComputation(IEclipseContext context, IEclipseContext originatingContext, ContextKey name, IContextFunction computedValue) {
 		this.context = context;
 		this.originatingContext = (EclipseContext) originatingContext;
 		this.name = name;
@@ -81,7 +105,7 @@ public class ValueComputation extends Computation {
 		if (name == null) {
 			if (other.name != null)
 				return false;
-		} else if (!name.equals(other.name))
+		} else if (name != other.name)
 			return false;
 		if (originatingContext == null) {
 			if (other.originatingContext != null)
@@ -92,9 +116,30 @@ public class ValueComputation extends Computation {
 	}
 
 	protected void doHandleInvalid(ContextChangeEvent event, List<Scheduled> scheduled) {
-		valid = false;
-		cachedValue = null;
 		int eventType = event.getEventType();
+		if (result != null && eventType != ContextChangeEvent.DISPOSE && event.getKey() != name && function instanceof ComparingContextFunction) {
+			if (!revalidate())
+				return;
+			if (result != null) {
+				// keep this computation so that dependents read the value computed already; it
+				// also listens to its own name and must not be invalidated by its own change
+				stopListening(originatingContext, name);
+				LookupStamps.keyChanged(name);
+				originatingContext.handleInvalid(name, eventType, event.getOldValue(), scheduled);
+				addDependency(originatingContext, name);
+				startListening();
+				return;
+			}
+		}
+		// dependents are invalidated in one pass; another of our dependencies changing
+		// before the value is recomputed does not need to reach them again
+		boolean skip = propagated && result == null && eventType != ContextChangeEvent.DISPOSE;
+		invalidate();
+		if (skip) {
+			if (event.getKey() == name)
+				originatingContext.removeLocalValueComputations(name);
+			return;
+		}
 		// if the originating context is being disposed, remove this value computation completely
 		if (eventType == ContextChangeEvent.DISPOSE) {
 			IEclipseContext eventsContext = event.getContext();
@@ -104,31 +149,106 @@ public class ValueComputation extends Computation {
 			}
 			return;
 		}
-		if (event.getName().equals(name))
+		if (event.getKey() == name)
 			originatingContext.removeLocalValueComputations(name);
+		propagated = true;
 		originatingContext.invalidate(name, eventType == ContextChangeEvent.DISPOSE ? ContextChangeEvent.REMOVED : eventType, event.getOldValue(), scheduled);
 	}
 
+	/**
+	 * Computes the value again and returns whether it changed. If it did not, the value stays
+	 * valid and dependents do not need to be notified.
+	 */
+	private boolean revalidate() {
+		Result oldResult = result;
+		Object oldValue = (oldResult == null) ? null : oldResult.value;
+		invalidate();
+		Object newValue;
+		try {
+			newValue = compute();
+		} catch (RuntimeException e) {
+			// let the next access report the failure
+			return true;
+		}
+		return ((ComparingContextFunction) function).changed(oldValue, newValue);
+	}
+
+	synchronized private void invalidate() {
+		invalidations++;
+		result = null;
+	}
+
 	public Object get() {
-		if (valid)
-			return cachedValue;
-		if (this.computing)
-			throw new CycleException(this.toString());
+		Result current = result;
+		if (current != null)
+			return current.value;
+		return compute();
+	}
+
+	/**
+	 * Computes the value without holding the monitor, as the function runs client code. The
+	 * value is only published if it was not invalidated while being computed.
+	 */
+	private Object compute() {
+		List<ValueComputation> stack = computing.get();
+		for (int i = 0; i < stack.size(); i++) {
+			if (stack.get(i) == this)
+				throw new CycleException(this.toString());
+		}
 
+		int stamp = invalidations;
+		Object value;
 		Computation oldComputation = EclipseContext.currentComputation.get();
 		EclipseContext.currentComputation.set(this);
-		computing = true;
+		stack.add(this);
 		try {
-			cachedValue = function.compute(originatingContext);
-			valid = true;
+			value = function.compute(originatingContext);
 		} catch (CycleException ex) {
 			throw new CycleException(ex.getCycleMessage() + '\n' + this.toString());
 		} finally {
-			computing = false;
+			stack.remove(stack.size() - 1);
 			EclipseContext.currentComputation.set(oldComputation);
 		}
-		startListening();
-		return cachedValue;
+		synchronized (this) {
+			startListening();
+			if (invalidations == stamp) {
+				propagated = false;
+				result = new Result(value);
+			} else if (originatingContext.localValueComputations.get(name) != this) {
+				// removed while computing; drop the listeners added since
+				removeAll();
+			}
+		}
+		return value;
+	}
+
+	// dependencies are recorded by all threads computing the value and changed by invalidations
+
+	synchronized public void addDependency(EclipseContext context, ContextKey name) {
+		super.addDependency(context, name);
+		// listen before the value is read, so that a change by another thread during the
+		// computation is not missed
+		if (EclipseContext.currentComputation.get() == this)
+			context.addListener(this, name);
+	}
+
+	public void handleInvalid(ContextChangeEvent event, List<Scheduled> scheduled) {
+		// changes made while computing the value on this thread are part of the computation
+		if (computing.get().contains(this))
+			return;
+		super.handleInvalid(event, scheduled);
+	}
+
+	synchronized protected void removeAll() {
+		super.removeAll();
+	}
+
+	synchronized public void startListening() {
+		super.startListening();
+	}
+
+	synchronized public void stopListening(EclipseContext context, ContextKey name) {
+		super.stopListening(context, name);
 	}
 
 	public String toString() {
@@ -20,6 +20,7 @@ import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.core.internal.contexts.EclipseContext;
 import org.eclipse.e4.core.internal.contexts.IContextDisposalListener;
 import org.eclipse.e4.core.internal.contexts.ILookupStrategy;
+import org.eclipse.e4.core.internal.contexts.LookupStamps;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.InvalidSyntaxException;
@@ -85,8 +86,10 @@ public class OSGiContextStrategy implements IContextDisposalListener, ILookupStr
 		 */
 		private void add(ServiceReference ref) {
 			String key = (String) ref.getProperty(IContextFunction.SERVICE_CONTEXT_KEY);
-			if (key != null)
+			if (key != null) {
 				functionKeys.put(key, ref);
+				LookupStamps.keyChanged(key);
+			}
 		}
 
 		public ServiceReference lookup(String key) {
@@ -103,8 +106,10 @@ public class OSGiContextStrategy implements IContextDisposalListener, ILookupStr
 		 */
 		private void remove(ServiceReference ref) {
 			String key = (String) ref.getProperty(IContextFunction.SERVICE_CONTEXT_KEY);
-			if (key != null)
+			if (key != null) {
 				functionKeys.remove(key);
+				LookupStamps.keyChanged(key);
+			}
 		}
 
 		public void serviceChanged(ServiceEvent event) {
@@ -26,6 +26,7 @@ import org.eclipse.e4.core.di.extensions.Preference;
 import org.eclipse.e4.core.di.suppliers.ExtendedObjectSupplier;
 import org.eclipse.e4.core.di.suppliers.IObjectDescriptor;
 import org.eclipse.e4.core.di.suppliers.IRequestor;
+import org.eclipse.e4.core.internal.di.shared.BaseType;
 import org.osgi.framework.FrameworkUtil;
 
 /**
@@ -61,6 +62,43 @@ public class PreferencesObjectSupplier extends ExtendedObjectSupplier {
 		}
 	}
 
+	/**
+	 * Reads a preference as a value of a base type.
+	 */
+	static private abstract class PreferenceReader {
+		abstract Object read(IPreferencesService service, String nodePath, String key);
+	}
+
+	static final private Map<BaseType, PreferenceReader> readers = new HashMap<BaseType, PreferenceReader>();
+
+	static {
+		readers.put(BaseType.BOOLEAN, new PreferenceReader() {
+			Object read(IPreferencesService service, String nodePath, String key) {
+				return service.getBoolean(nodePath, key, false, null);
+			}
+		});
+		readers.put(BaseType.INT, new PreferenceReader() {
+			Object read(IPreferencesService service, String nodePath, String key) {
+				return service.getInt(nodePath, key, 0, null);
+			}
+		});
+		readers.put(BaseType.DOUBLE, new PreferenceReader() {
+			Object read(IPreferencesService service, String nodePath, String key) {
+				return service.getDouble(nodePath, key, 0.0d, null);
+			}
+		});
+		readers.put(BaseType.FLOAT, new PreferenceReader() {
+			Object read(IPreferencesService service, String nodePath, String key) {
+				return service.getFloat(nodePath, key, 0.0f, null);
+			}
+		});
+		readers.put(BaseType.LONG, new PreferenceReader() {
+			Object read(IPreferencesService service, String nodePath, String key) {
+				return service.getLong(nodePath, key, 0L, null);
+			}
+		});
+	}
+
 	private Map<String, List<PrefInjectionListener>> listenerCache = new HashMap<String, List<PrefInjectionListener>>();
 
 	public PreferencesObjectSupplier() {
@@ -83,34 +121,12 @@ public class PreferencesObjectSupplier extends ExtendedObjectSupplier {
 		if (track)
 			addListener(nodePath, requestor);
 
-		if (descriptorsClass.isPrimitive()) {
-			if (descriptorsClass.equals(boolean.class))
-				return getPreferencesService().getBoolean(nodePath, key, false, null);
-			else if (descriptorsClass.equals(int.class))
-				return getPreferencesService().getInt(nodePath, key, 0, null);
-			else if (descriptorsClass.equals(double.class))
-				return getPreferencesService().getDouble(nodePath, key, 0.0d, null);
-			else if (descriptorsClass.equals(float.class))
-				return getPreferencesService().getFloat(nodePath, key, 0.0f, null);
-			else if (descriptorsClass.equals(long.class))
-				return getPreferencesService().getLong(nodePath, key, 0L, null);
+		BaseType baseType = BaseType.get(descriptor);
+		if (baseType != null) {
+			PreferenceReader reader = readers.get(baseType);
+			if (reader != null)
+				return reader.read(getPreferencesService(), nodePath, key);
 		}
-
-		if (String.class.equals(descriptorsClass))
-			return getPreferencesService().getString(nodePath, key, null, null);
-		else if (Boolean.class.equals(descriptorsClass))
-			return getPreferencesService().getBoolean(nodePath, key, false, null);
-		else if (Boolean.class.equals(descriptorsClass))
-			return getPreferencesService().getBoolean(nodePath, key, false, null);
-		else if (Integer.class.equals(descriptorsClass))
-			return getPreferencesService().getInt(nodePath, key, 0, null);
-		else if (Double.class.equals(descriptorsClass))
-			return getPreferencesService().getDouble(nodePath, key, 0.0d, null);
-		else if (Float.class.equals(descriptorsClass))
-			return getPreferencesService().getFloat(nodePath, key, 0.0f, null);
-		else if (Long.class.equals(descriptorsClass))
-			return getPreferencesService().getLong(nodePath, key, 0L, null);
-
 		return getPreferencesService().getString(nodePath, key, null, null);
 	}
 
@@ -11,6 +11,7 @@
 package org.eclipse.e4.core.di;
 
 import java.lang.annotation.Annotation;
+import java.util.Collection;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Scope;
@@ -64,6 +65,18 @@ public interface IInjector {
 	 */
 	public void inject(Object object, PrimaryObjectSupplier objectSupplier) throws InjectionException;
 
+	/**
+	 * Injects data from the supplier into a number of independent domain objects. The values
+	 * for all objects are looked up first; they are then injected and 
+	 * {@link PostConstruct} methods are called in the iteration order of 
+	 * the collection.
+	 * @param objects the objects to perform injection on
+	 * @param objectSupplier primary object supplier for the injection
+	 * @throws InjectionException if an exception occurred while performing this operation
+	 * @see #inject(Object, PrimaryObjectSupplier)
+	 */
+	public void injectAll(Collection<?> objects, PrimaryObjectSupplier objectSupplier) throws InjectionException;
+
 	/**
 	 * Un-injects the supplier from the object. All un-injected values have to be optional,
 	 * or un-injection will fail.
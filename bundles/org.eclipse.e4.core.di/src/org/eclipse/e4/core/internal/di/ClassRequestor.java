@@ -30,6 +30,9 @@ public class ClassRequestor extends Requestor {
 	@Named("e4.internal.injectionLink")
 	final static public String pseudoVariable = null;
 
+	// descriptors are immutable, so all class requestors share the same one
+	static private IObjectDescriptor pseudoDescriptor;
+
 	final private String clazzName;
 
 	public ClassRequestor(Class<?> clazz, IInjector injector, PrimaryObjectSupplier primarySupplier, PrimaryObjectSupplier tempSupplier, Object requestingObject, boolean track) {
@@ -44,6 +47,15 @@ public class ClassRequestor extends Requestor {
 
 	@Override
 	public IObjectDescriptor[] calcDependentObjects() {
+		IObjectDescriptor descriptor = getPseudoDescriptor();
+		if (descriptor == null)
+			return null;
+		return new IObjectDescriptor[] {descriptor};
+	}
+
+	static synchronized private IObjectDescriptor getPseudoDescriptor() {
+		if (pseudoDescriptor != null)
+			return pseudoDescriptor;
 		Field field = null;
 		try {
 			field = ClassRequestor.class.getField("pseudoVariable"); //$NON-NLS-1$
@@ -54,7 +66,8 @@ public class ClassRequestor extends Requestor {
 			e.printStackTrace(); // tested - not going to happen
 			return null;
 		}
-		return new IObjectDescriptor[] {new ObjectDescriptor(field.getGenericType(), field.getAnnotations())};
+		pseudoDescriptor = new ObjectDescriptor(field.getGenericType(), field.getAnnotations());
+		return pseudoDescriptor;
 	}
 
 	@Override
@@ -28,13 +28,15 @@ public class ConstructorRequestor extends Requestor {
 		this.constructor = constructor;
 	}
 
+	ConstructorRequestor(InjectionPlan.Site site, IInjector injector, PrimaryObjectSupplier primarySupplier, PrimaryObjectSupplier tempSupplier) {
+		super(injector, primarySupplier, tempSupplier, null, false /* do not track */, site.groupUpdates, site.optional, site.descriptors);
+		this.constructor = (Constructor<?>) site.member;
+	}
+
 	public Object execute() throws InjectionException {
 		Object result = null;
-		boolean wasAccessible = true;
-		if (!constructor.isAccessible()) {
+		if (!constructor.isAccessible())
 			constructor.setAccessible(true);
-			wasAccessible = false;
-		}
 		boolean pausedRecording = false;
 		if ((primarySupplier != null)) {
 			primarySupplier.pauseRecording();
@@ -52,8 +54,6 @@ public class ConstructorRequestor extends Requestor {
 			Throwable originalException = e.getCause();
 			throw new InjectionException((originalException != null) ? originalException : e);
 		} finally {
-			if (!wasAccessible)
-				constructor.setAccessible(false);
 			if (pausedRecording)
 				primarySupplier.resumeRecoding();
 			clearResolvedArgs();
@@ -25,6 +25,11 @@ public class FieldRequestor extends Requestor {
 		this.field = field;
 	}
 
+	FieldRequestor(InjectionPlan.Site site, IInjector injector, PrimaryObjectSupplier primarySupplier, PrimaryObjectSupplier tempSupplier, Object requestingObject, boolean track) {
+		super(injector, primarySupplier, tempSupplier, requestingObject, track, site.groupUpdates, site.optional, site.descriptors);
+		this.field = (Field) site.member;
+	}
+
 	public Object execute() throws InjectionException {
 		if (actualArgs == null)
 			return null; // optional field
@@ -42,20 +47,16 @@ public class FieldRequestor extends Requestor {
 		Object userObject = getRequestingObject();
 		if (userObject == null)
 			return false;
-		boolean wasAccessible = true;
-		if (!field.isAccessible()) {
+		// fields are cached per class by the injector; they are made accessible once and stay
+		// accessible so that concurrent injections using the same field do not interfere
+		if (!field.isAccessible())
 			field.setAccessible(true);
-			wasAccessible = false;
-		}
 		try {
 			field.set(userObject, value);
 		} catch (IllegalArgumentException e) {
 			throw new InjectionException(e);
 		} catch (IllegalAccessException e) {
 			throw new InjectionException(e);
-		} finally {
-			if (!wasAccessible)
-				field.setAccessible(false);
 		}
 		return true;
 	}
@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.di;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.eclipse.e4.core.di.annotations.GroupUpdates;
+import org.eclipse.e4.core.di.annotations.Optional;
+import org.eclipse.e4.core.di.suppliers.IObjectDescriptor;
+
+/**
+ * The members of a class that take part in injection. The plan is computed once per class
+ * so that injecting further instances of the class does not need to scan the class again.
+ * <p>
+ * Plans are immutable.
+ * </p>
+ */
+class InjectionPlan {
+
+	final static private String JAVA_OBJECT = "java.lang.Object"; //$NON-NLS-1$
+
+	/**
+	 * An injected constructor, field or method.
+	 */
+	static class Site {
+		final AccessibleObject member;
+		final IObjectDescriptor[] descriptors;
+		final boolean isStatic;
+		final boolean groupUpdates;
+		final boolean optional;
+
+		Site(Field field) {
+			member = field;
+			descriptors = new IObjectDescriptor[] {new ObjectDescriptor(field.getGenericType(), field.getAnnotations())};
+			isStatic = Modifier.isStatic(field.getModifiers());
+			groupUpdates = field.isAnnotationPresent(GroupUpdates.class);
+			optional = field.isAnnotationPresent(Optional.class);
+		}
+
+		Site(Method method) {
+			member = method;
+			Type[] parameterTypes = method.getGenericParameterTypes();
+			Annotation[][] annotations = method.getParameterAnnotations();
+			descriptors = new IObjectDescriptor[parameterTypes.length];
+			for (int i = 0; i < parameterTypes.length; i++)
+				descriptors[i] = new ObjectDescriptor(parameterTypes[i], annotations[i]);
+			isStatic = Modifier.isStatic(method.getModifiers());
+			groupUpdates = method.isAnnotationPresent(GroupUpdates.class);
+			optional = method.isAnnotationPresent(Optional.class);
+		}
+
+		Site(Constructor<?> constructor) {
+			member = constructor;
+			Annotation[][] annotations = constructor.getParameterAnnotations();
+			Type[] logicalParams = constructor.getGenericParameterTypes();
+			// JDK bug: different methods see / don't see generated args for nested classes
+			// http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=5087240
+			Class<?>[] compilerParams = constructor.getParameterTypes();
+			if (compilerParams.length > logicalParams.length) {
+				Type[] tmp = new Type[compilerParams.length];
+				System.arraycopy(compilerParams, 0, tmp, 0, compilerParams.length - logicalParams.length);
+				System.arraycopy(logicalParams, 0, tmp, compilerParams.length - logicalParams.length, logicalParams.length);
+				logicalParams = tmp;
+			}
+			descriptors = new IObjectDescriptor[logicalParams.length];
+			for (int i = 0; i < logicalParams.length; i++)
+				descriptors[i] = new ObjectDescriptor(logicalParams[i], annotations[i]);
+			isStatic = false;
+			groupUpdates = false;
+			optional = false;
+		}
+	}
+
+	// sorts constructors by descending number of arguments
+	final static private Comparator<Constructor<?>> constructorOrder = new Comparator<Constructor<?>>() {
+		public int compare(Constructor<?> c1, Constructor<?> c2) {
+			int l1 = c1.getParameterTypes().length;
+			int l2 = c2.getParameterTypes().length;
+			return l2 - l1;
+		}
+	};
+
+	/**
+	 * The injected members declared by one class of the hierarchy.
+	 */
+	static class ClassPlan {
+		// static members are only injected once per class; null if the class has no static members
+		final AtomicBoolean staticInjected;
+		final Site[] fields;
+		final Site[] methods;
+
+		ClassPlan(AtomicBoolean staticInjected, Site[] fields, Site[] methods) {
+			this.staticInjected = staticInjected;
+			this.fields = fields;
+			this.methods = methods;
+		}
+	}
+
+	final boolean isSingleton;
+	// constructors that can be used to create instances, longest first
+	final Site[] constructors;
+	// ordered from the topmost superclass down to the class itself
+	final ClassPlan[] classes;
+	final Site[] postConstruct;
+	final Site[] preDestroy;
+
+	/**
+	 * Creates the plan for the class. The static injection flags are shared by the plans
+	 * of all classes that have the declaring class in their hierarchy.
+	 */
+	InjectionPlan(Class<?> clazz, Map<Class<?>, AtomicBoolean> staticFlags) {
+		isSingleton = clazz.isAnnotationPresent(Singleton.class);
+		constructors = findConstructors(clazz);
+
+		List<Class<?>> hierarchy = new ArrayList<Class<?>>(5);
+		hierarchy.add(clazz);
+		for (Class<?> superClass = clazz.getSuperclass(); superClass != null && !superClass.getName().equals(JAVA_OBJECT); superClass = superClass.getSuperclass())
+			hierarchy.add(superClass);
+
+		classes = new ClassPlan[hierarchy.size()];
+		List<Site> postConstructSites = new ArrayList<Site>();
+		List<Site> preDestroySites = new ArrayList<Site>();
+		for (int i = hierarchy.size() - 1; i >= 0; i--) {
+			Class<?> declaringClass = hierarchy.get(i);
+			List<Class<?>> subClasses = hierarchy.subList(0, i);
+			boolean hasStatic = false;
+
+			List<Site> fieldSites = new ArrayList<Site>();
+			for (Field field : declaringClass.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers()))
+					hasStatic = true;
+				if (field.isAnnotationPresent(Inject.class))
+					fieldSites.add(new Site(field));
+			}
+
+			List<Site> methodSites = new ArrayList<Site>();
+			for (Method method : declaringClass.getDeclaredMethods()) {
+				if (isOverridden(method, subClasses))
+					continue; // processed in the subclass
+				if (Modifier.isStatic(method.getModifiers()))
+					hasStatic = true;
+				if (method.isAnnotationPresent(Inject.class))
+					methodSites.add(new Site(method));
+				if (method.isAnnotationPresent(PostConstruct.class))
+					postConstructSites.add(new Site(method));
+				if (method.isAnnotationPresent(PreDestroy.class))
+					preDestroySites.add(new Site(method));
+			}
+			AtomicBoolean staticInjected = hasStatic ? getStaticFlag(declaringClass, staticFlags) : null;
+			classes[hierarchy.size() - 1 - i] = new ClassPlan(staticInjected, toArray(fieldSites), toArray(methodSites));
+		}
+		postConstruct = toArray(postConstructSites);
+		preDestroy = toArray(preDestroySites);
+	}
+
+	static private Site[] findConstructors(Class<?> clazz) {
+		List<Constructor<?>> sortedConstructors = new ArrayList<Constructor<?>>();
+		for (Constructor<?> constructor : clazz.getDeclaredConstructors()) {
+			// skip private and protected constructors; allow public and package visibility
+			int modifiers = constructor.getModifiers();
+			if (((modifiers & Modifier.PRIVATE) != 0) || ((modifiers & Modifier.PROTECTED) != 0))
+				continue;
+			// unless this is the default constructor, it has to be tagged
+			if (!constructor.isAnnotationPresent(Inject.class) && constructor.getParameterTypes().length != 0)
+				continue;
+			sortedConstructors.add(constructor);
+		}
+		Collections.sort(sortedConstructors, constructorOrder);
+		Site[] result = new Site[sortedConstructors.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = new Site(sortedConstructors.get(i));
+		return result;
+	}
+
+	static private AtomicBoolean getStaticFlag(Class<?> declaringClass, Map<Class<?>, AtomicBoolean> staticFlags) {
+		synchronized (staticFlags) {
+			AtomicBoolean flag = staticFlags.get(declaringClass);
+			if (flag == null) {
+				flag = new AtomicBoolean();
+				staticFlags.put(declaringClass, flag);
+			}
+			return flag;
+		}
+	}
+
+	static private Site[] toArray(List<Site> sites) {
+		return sites.toArray(new Site[sites.size()]);
+	}
+
+	/**
+	 * Checks if a given method is overridden with an injectable method.
+	 */
+	static private boolean isOverridden(Method method, List<Class<?>> classHierarchy) {
+		int modifiers = method.getModifiers();
+		if (Modifier.isPrivate(modifiers))
+			return false;
+		if (Modifier.isStatic(modifiers))
+			return false;
+		// method is not private if we reached this line, check not(public OR protected)
+		boolean isDefault = !(Modifier.isPublic(modifiers) || Modifier.isProtected(modifiers));
+
+		String methodName = method.getName();
+		Class<?>[] methodParams = method.getParameterTypes();
+		int methodParamsLength = method.getParameterTypes().length;
+		for (Class<?> subClass : classHierarchy) {
+			Method[] methods = subClass.getDeclaredMethods();
+			Method matchingMethod = null;
+			for (Method candidate : methods) {
+				if (!methodName.equals(candidate.getName()))
+					continue;
+				Class<?>[] candidateParams = candidate.getParameterTypes();
+				if (candidateParams.length != methodParamsLength)
+					continue;
+				boolean paramsMatch = true;
+				for (int i = 0; i < methodParamsLength; i++) {
+					if (candidateParams[i].equals(methodParams[i])) // strictly speaking, need to add erasures
+						continue;
+					paramsMatch = false;
+				}
+				if (!paramsMatch)
+					continue;
+				matchingMethod = candidate;
+				break;
+			}
+			if (matchingMethod == null)
+				continue;
+
+			if (isDefault) { // must be in the same package to override
+				Package originalPackage = method.getDeclaringClass().getPackage();
+				Package overridePackage = subClass.getPackage();
+
+				if (originalPackage == null && overridePackage == null)
+					return true;
+				if (originalPackage == null || overridePackage == null)
+					return false;
+				if (originalPackage.equals(overridePackage))
+					return true;
+			} else
+				return true;
+		}
+		return false;
+	}
+}
@@ -11,40 +11,32 @@
 package org.eclipse.e4.core.internal.di;
 
 import java.lang.annotation.Annotation;
+import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
-import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
-import javax.inject.Inject;
-import javax.inject.Named;
-import javax.inject.Provider;
-import javax.inject.Singleton;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.eclipse.e4.core.di.IBinding;
 import org.eclipse.e4.core.di.IInjector;
 import org.eclipse.e4.core.di.InjectionException;
-import org.eclipse.e4.core.di.annotations.Optional;
 import org.eclipse.e4.core.di.suppliers.ExtendedObjectSupplier;
 import org.eclipse.e4.core.di.suppliers.IObjectDescriptor;
 import org.eclipse.e4.core.di.suppliers.IRequestor;
 import org.eclipse.e4.core.di.suppliers.PrimaryObjectSupplier;
 import org.eclipse.e4.core.internal.di.osgi.DIActivator;
 import org.eclipse.e4.core.internal.di.osgi.LogHelper;
+import org.eclipse.e4.core.internal.di.shared.WeakIdentityMap;
 
 /**
  * Reflection-based dependency injector.
@@ -54,27 +46,100 @@ public class InjectorImpl implements IInjector {
 	final static private String DEBUG_INJECTION = "org.eclipse.e4.core.di/debug/injector"; //$NON-NLS-1$
 	final static private boolean shouldDebug = DIActivator.getDefault().getBooleanDebugOption(DEBUG_INJECTION, false);
 
-	final static private String JAVA_OBJECT = "java.lang.Object"; //$NON-NLS-1$
-
-	final private static Boolean DEFAULT_BOOLEAN = new Boolean(false);
-	final private static Integer DEFAULT_INTEGER = new Integer(0);
-	final private static Character DEFAULT_CHAR = new Character((char) 0);
-	final private static Float DEFAULT_FLOAT = new Float(0.0f);
-	final private static Double DEFAULT_DOUBLE = new Double(0.0d);
-	final private static Long DEFAULT_LONG = new Long(0L);
-	final private static Short DEFAULT_SHORT = new Short((short) 0);
-	final private static Byte DEFAULT_BYTE = new Byte((byte) 0);
-
-	private Map<PrimaryObjectSupplier, List<WeakReference<?>>> injectedObjects = new HashMap<PrimaryObjectSupplier, List<WeakReference<?>>>();
-	private Set<WeakReference<Class<?>>> injectedClasses = new HashSet<WeakReference<Class<?>>>();
-	private HashMap<Class<?>, Object> singletonCache = new HashMap<Class<?>, Object>();
-	private Map<Class<?>, Set<Binding>> bindings = new HashMap<Class<?>, Set<Binding>>();
+	// injected object -> its plan, in injection order; the objects keep the plans of their classes alive
+	private Map<PrimaryObjectSupplier, WeakIdentityMap<Object, InjectionPlan>> injectedObjects = new HashMap<PrimaryObjectSupplier, WeakIdentityMap<Object, InjectionPlan>>();
+	// outlive the weakly held plans; keyed weakly and not referencing the classes so they can be unloaded
+	private Map<Class<?>, AtomicBoolean> staticFlags = new WeakHashMap<Class<?>, AtomicBoolean>();
+	// each singleton is created once by the thread that adds its task; other threads wait for the task
+	private ConcurrentHashMap<Class<?>, SingletonTask> singletons = new ConcurrentHashMap<Class<?>, SingletonTask>();
+	// the singleton tasks threads are waiting for, used to detect recursive references across threads
+	private Map<Thread, SingletonTask> waitingFor = new ConcurrentHashMap<Thread, SingletonTask>();
+	private Map<BindingKey, Binding> bindings = new ConcurrentHashMap<BindingKey, Binding>();
 
 	// Performance improvement:
 	private Map<Class<?>, Method[]> methodsCache = new WeakHashMap<Class<?>, Method[]>();
-	private Map<Class<?>, Map<Method, Boolean>> isOverriddenCache = new WeakHashMap<Class<?>, Map<Method, Boolean>>();
+	// plans reference their classes, so they are held weakly to let the classes be unloaded
+	private Map<Class<?>, Reference<InjectionPlan>> plans = new WeakHashMap<Class<?>, Reference<InjectionPlan>>();
+
+	/**
+	 * Identifies a binding by the bound class and the qualifier name.
+	 */
+	static private class BindingKey {
+		final private Class<?> clazz;
+		final private String qualifierName;
 
-	private Set<Class<?>> classesBeingCreated = new HashSet<Class<?>>(5);
+		BindingKey(Class<?> clazz, String qualifierName) {
+			this.clazz = clazz;
+			this.qualifierName = qualifierName;
+		}
+
+		public int hashCode() {
+			int result = (clazz == null) ? 0 : clazz.hashCode();
+			return 31 * result + ((qualifierName == null) ? 0 : qualifierName.hashCode());
+		}
+
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof BindingKey))
+				return false;
+			BindingKey other = (BindingKey) obj;
+			if (clazz != other.clazz)
+				return false;
+			if (qualifierName == null)
+				return other.qualifierName == null;
+			return qualifierName.equals(other.qualifierName);
+		}
+	}
+
+	static private class SingletonTask extends FutureTask<Object> {
+		// null once the task is done, so that finished tasks don't keep threads alive
+		volatile Thread creator = Thread.currentThread();
+
+		SingletonTask(Callable<Object> callable) {
+			super(callable);
+		}
+
+		protected void done() {
+			creator = null;
+		}
+	}
+
+	/**
+	 * Creates a singleton. Tasks keep their callables after running on some VMs, so the
+	 * references to the suppliers are cleared once the singleton has been created.
+	 */
+	private class SingletonCreation implements Callable<Object> {
+		private Class<?> clazz;
+		private InjectionPlan plan;
+		private PrimaryObjectSupplier objectSupplier;
+		private PrimaryObjectSupplier tempSupplier;
+
+		SingletonCreation(Class<?> clazz, InjectionPlan plan, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier) {
+			this.clazz = clazz;
+			this.plan = plan;
+			this.objectSupplier = objectSupplier;
+			this.tempSupplier = tempSupplier;
+		}
+
+		public Object call() {
+			try {
+				return createInstance(clazz, plan, objectSupplier, tempSupplier);
+			} finally {
+				clazz = null;
+				plan = null;
+				objectSupplier = null;
+				tempSupplier = null;
+			}
+		}
+	}
+
+	// classes being created on the current thread, used to detect recursive references
+	private ThreadLocal<Set<Class<?>>> classesBeingCreated = new ThreadLocal<Set<Class<?>>>() {
+		protected Set<Class<?>> initialValue() {
+			return new HashSet<Class<?>>(5);
+		}
+	};
 
 	public void inject(Object object, PrimaryObjectSupplier objectSupplier) {
 		inject(object, objectSupplier, null);
@@ -82,6 +147,30 @@ public class InjectorImpl implements IInjector {
 
 	public void inject(Object object, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier) {
 		// Two stages: first, go and collect {requestor, descriptor[] }
+		ArrayList<Requestor> requestors = collectRequestors(object, objectSupplier, tempSupplier);
+
+		// Then ask suppliers to fill actual values {requestor, descriptor[], actualvalues[] }
+		resolveRequestorArgs(requestors, objectSupplier, tempSupplier, false, true, true);
+
+		completeInjection(object, requestors, objectSupplier, tempSupplier);
+	}
+
+	public void injectAll(Collection<?> objects, PrimaryObjectSupplier objectSupplier) {
+		Object[] targets = objects.toArray();
+		List<ArrayList<Requestor>> requestors = new ArrayList<ArrayList<Requestor>>(targets.length);
+		for (Object object : targets)
+			requestors.add(collectRequestors(object, objectSupplier, null));
+
+		// values of all objects are resolved before any object is injected
+		for (ArrayList<Requestor> objectRequestors : requestors)
+			resolveRequestorArgs(objectRequestors, objectSupplier, null, false, true, true);
+
+		// values are set and @PostConstruct is called in the collection order
+		for (int i = 0; i < targets.length; i++)
+			completeInjection(targets[i], requestors.get(i), objectSupplier, null);
+	}
+
+	private ArrayList<Requestor> collectRequestors(Object object, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier) {
 		ArrayList<Requestor> requestors = new ArrayList<Requestor>();
 		processClassHierarchy(object, objectSupplier, tempSupplier, true /* track */, true /* normal order */, requestors);
 
@@ -94,20 +183,21 @@ public class InjectorImpl implements IInjector {
 		}
 		if (!haveLink)
 			requestors.add(new ClassRequestor(object.getClass(), this, objectSupplier, tempSupplier, object, true));
+		return requestors;
+	}
 
-		// Then ask suppliers to fill actual values {requestor, descriptor[], actualvalues[] }
-		resolveRequestorArgs(requestors, objectSupplier, tempSupplier, false, true, true);
-
+	private void completeInjection(Object object, ArrayList<Requestor> requestors, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier) {
 		// Call requestors in order
 		for (Requestor requestor : requestors) {
 			if (requestor.isResolved())
 				requestor.execute();
 		}
-		rememberInjectedObject(object, objectSupplier);
+		InjectionPlan plan = getPlan(object.getClass());
+		rememberInjectedObject(object, plan, objectSupplier);
 
 		// We call @PostConstruct after injection. This means that is is called 
 		// as a part of both #make() and #inject().
-		processAnnotated(PostConstruct.class, object, object.getClass(), objectSupplier, tempSupplier, new ArrayList<Class<?>>(5));
+		processAnnotated(plan.postConstruct, object, objectSupplier, tempSupplier);
 
 		// remove references to the temporary suppliers
 		for (Requestor requestor : requestors) {
@@ -115,58 +205,55 @@ public class InjectorImpl implements IInjector {
 		}
 	}
 
-	private void rememberInjectedObject(Object object, PrimaryObjectSupplier objectSupplier) {
+	private void rememberInjectedObject(Object object, InjectionPlan plan, PrimaryObjectSupplier objectSupplier) {
 		synchronized (injectedObjects) {
-			List<WeakReference<?>> list;
-			if (!injectedObjects.containsKey(objectSupplier)) {
-				list = new ArrayList<WeakReference<?>>();
-				injectedObjects.put(objectSupplier, list);
-			} else
-				list = injectedObjects.get(objectSupplier);
-			for (WeakReference<?> ref : list) {
-				if (object == ref.get())
-					return; // we already have it
+			WeakIdentityMap<Object, InjectionPlan> objects = injectedObjects.get(objectSupplier);
+			if (objects == null) {
+				objects = new WeakIdentityMap<Object, InjectionPlan>(true);
+				injectedObjects.put(objectSupplier, objects);
 			}
-			list.add(new WeakReference<Object>(object));
+			objects.put(object, plan);
 		}
 	}
 
 	private boolean forgetInjectedObject(Object object, PrimaryObjectSupplier objectSupplier) {
 		synchronized (injectedObjects) {
-			if (!injectedObjects.containsKey(objectSupplier))
+			WeakIdentityMap<Object, InjectionPlan> objects = injectedObjects.get(objectSupplier);
+			if (objects == null)
 				return false;
-			List<WeakReference<?>> list = injectedObjects.get(objectSupplier);
-			for (Iterator<WeakReference<?>> i = list.iterator(); i.hasNext();) {
-				WeakReference<?> ref = i.next();
-				if (object == ref.get()) {
-					i.remove();
-					return true;
-				}
-			}
-			return false;
+			return (objects.remove(object) != null);
 		}
 	}
 
-	private List<WeakReference<?>> forgetSupplier(PrimaryObjectSupplier objectSupplier) {
+	private void forgetSupplier(PrimaryObjectSupplier objectSupplier) {
 		synchronized (injectedObjects) {
-			if (!injectedObjects.containsKey(objectSupplier))
-				return null;
-			return injectedObjects.remove(objectSupplier);
+			injectedObjects.remove(objectSupplier);
 		}
 	}
 
-	private List<WeakReference<?>> getSupplierObjects(PrimaryObjectSupplier objectSupplier) {
+	private List<Object> getSupplierObjects(PrimaryObjectSupplier objectSupplier) {
 		synchronized (injectedObjects) {
-			if (!injectedObjects.containsKey(objectSupplier))
+			WeakIdentityMap<Object, InjectionPlan> objects = injectedObjects.get(objectSupplier);
+			if (objects == null)
 				return null;
-			return injectedObjects.get(objectSupplier);
+			return objects.keys();
+		}
+	}
+
+	/**
+	 * Returns the number of live objects injected with the given supplier. Intended for diagnostics.
+	 */
+	public int getInjectedCount(PrimaryObjectSupplier objectSupplier) {
+		synchronized (injectedObjects) {
+			WeakIdentityMap<Object, InjectionPlan> objects = injectedObjects.get(objectSupplier);
+			return (objects == null) ? 0 : objects.size();
 		}
 	}
 
 	public void uninject(Object object, PrimaryObjectSupplier objectSupplier) {
 		if (!forgetInjectedObject(object, objectSupplier))
 			return; // not injected at this time
-		processAnnotated(PreDestroy.class, object, object.getClass(), objectSupplier, null, new ArrayList<Class<?>>(5));
+		processAnnotated(getPlan(object.getClass()).preDestroy, object, objectSupplier, null);
 
 		ArrayList<Requestor> requestors = new ArrayList<Requestor>();
 		processClassHierarchy(object, objectSupplier, null, true /* track */, false /* inverse order */, requestors);
@@ -240,10 +327,10 @@ public class InjectorImpl implements IInjector {
 	}
 
 	private Class<?> getImplementationClass(Class<?> clazz) {
-		IObjectDescriptor descriptor = new ObjectDescriptor(clazz, null);
+		ObjectDescriptor descriptor = new ObjectDescriptor(clazz, null);
 		Binding binding = findBinding(descriptor);
 		if (binding == null)
-			return getDesiredClass(descriptor.getDesiredType());
+			return descriptor.getDesiredClass();
 		return binding.getImplementationClass();
 	}
 
@@ -256,7 +343,7 @@ public class InjectorImpl implements IInjector {
 		Binding binding = findBinding(descriptor);
 		Class<?> implementationClass;
 		if (binding == null)
-			implementationClass = getProviderType(descriptor.getDesiredType());
+			implementationClass = internal(descriptor).getProviderType();
 		else
 			implementationClass = binding.getImplementationClass();
 		if (objectSupplier != null) {
@@ -270,42 +357,65 @@ public class InjectorImpl implements IInjector {
 	}
 
 	private Object internalMake(Class<?> clazz, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier) {
-		if (classesBeingCreated.contains(clazz))
-			throw new InjectionException("Recursive reference trying to create class " + clazz.getName()); //$NON-NLS-1$
-		try {
-			classesBeingCreated.add(clazz);
-
-			boolean isSingleton = clazz.isAnnotationPresent(Singleton.class);
-			if (isSingleton) {
-				synchronized (singletonCache) {
-					if (singletonCache.containsKey(clazz))
-						return singletonCache.get(clazz);
-				}
+		InjectionPlan plan = getPlan(clazz);
+		if (!plan.isSingleton)
+			return createInstance(clazz, plan, objectSupplier, tempSupplier);
+		SingletonTask task = singletons.get(clazz);
+		if (task == null) {
+			SingletonTask newTask = new SingletonTask(new SingletonCreation(clazz, plan, objectSupplier, tempSupplier));
+			task = singletons.putIfAbsent(clazz, newTask);
+			if (task == null) {
+				task = newTask;
+				task.run();
 			}
+		}
+		return getSingleton(clazz, task);
+	}
 
-			Constructor<?>[] constructors = clazz.getDeclaredConstructors();
-			// Sort the constructors by descending number of constructor arguments
-			ArrayList<Constructor<?>> sortedConstructors = new ArrayList<Constructor<?>>(constructors.length);
-			for (Constructor<?> constructor : constructors)
-				sortedConstructors.add(constructor);
-			Collections.sort(sortedConstructors, new Comparator<Constructor<?>>() {
-				public int compare(Constructor<?> c1, Constructor<?> c2) {
-					int l1 = c1.getParameterTypes().length;
-					int l2 = c2.getParameterTypes().length;
-					return l2 - l1;
-				}
-			});
-
-			for (Constructor<?> constructor : sortedConstructors) {
-				// skip private and protected constructors; allow public and package visibility
-				int modifiers = constructor.getModifiers();
-				if (((modifiers & Modifier.PRIVATE) != 0) || ((modifiers & Modifier.PROTECTED) != 0))
-					continue;
+	private Object getSingleton(Class<?> clazz, SingletonTask task) {
+		Thread thread = Thread.currentThread();
+		if (!task.isDone()) {
+			if (classesBeingCreated.get().contains(clazz))
+				throw new InjectionException("Recursive reference trying to create class " + clazz.getName()); //$NON-NLS-1$
+			waitingFor.put(thread, task);
+		}
+		try {
+			// waiting for a thread that waits, directly or not, for this thread would never end
+			for (SingletonTask waited = task; waited != null && !waited.isDone(); ) {
+				Thread creator = waited.creator;
+				if (creator == null)
+					break;
+				if (creator == thread)
+					throw new InjectionException("Recursive reference trying to create class " + clazz.getName()); //$NON-NLS-1$
+				waited = waitingFor.get(creator);
+			}
+			return task.get();
+		} catch (InterruptedException e) {
+			throw new InjectionException(e);
+		} catch (ExecutionException e) {
+			// a failed creation can be attempted again
+			singletons.remove(clazz, task);
+			throw rethrow(e);
+		} finally {
+			waitingFor.remove(thread);
+		}
+	}
 
-				// unless this is the default constructor, it has to be tagged
-				if (!constructor.isAnnotationPresent(Inject.class) && constructor.getParameterTypes().length != 0)
-					continue;
+	static private RuntimeException rethrow(ExecutionException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof RuntimeException)
+			return (RuntimeException) cause;
+		if (cause instanceof Error)
+			throw (Error) cause;
+		return new InjectionException(cause);
+	}
 
+	private Object createInstance(Class<?> clazz, InjectionPlan plan, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier) {
+		Set<Class<?>> beingCreated = classesBeingCreated.get();
+		if (!beingCreated.add(clazz))
+			throw new InjectionException("Recursive reference trying to create class " + clazz.getName()); //$NON-NLS-1$
+		try {
+			for (InjectionPlan.Site constructor : plan.constructors) {
 				ConstructorRequestor requestor = new ConstructorRequestor(constructor, this, objectSupplier, tempSupplier);
 				Object[] actualArgs = resolveArgs(requestor, objectSupplier, tempSupplier, false, true, false);
 				if (unresolved(actualArgs) != -1)
@@ -315,17 +425,12 @@ public class InjectorImpl implements IInjector {
 				Object newInstance = requestor.execute();
 				if (newInstance != null) {
 					inject(newInstance, objectSupplier, tempSupplier);
-					if (isSingleton) {
-						synchronized (singletonCache) { // TBD this is not quite right, synch the method
-							singletonCache.put(clazz, newInstance);
-						}
-					}
 					return newInstance;
 				}
 			}
 			throw new InjectionException("Could not find satisfiable constructor in " + clazz.getName()); //$NON-NLS-1$
 		} finally {
-			classesBeingCreated.remove(clazz);
+			beingCreated.remove(clazz);
 		}
 	}
 
@@ -346,23 +451,13 @@ public class InjectorImpl implements IInjector {
 	}
 
 	public void disposed(PrimaryObjectSupplier objectSupplier) {
-		List<WeakReference<?>> references = getSupplierObjects(objectSupplier);
-		if (references == null)
+		List<Object> objects = getSupplierObjects(objectSupplier);
+		if (objects == null)
 			return;
-		Object[] objects = new Object[references.size()];
-		int count = 0;
-		for (WeakReference<?> ref : references) {
-			Object object = ref.get();
-			if (object != null) {
-				objects[count] = object;
-				count++;
-			}
-		}
-		for (int i = 0; i < count; i++) {
-			Object object = objects[i];
+		for (Object object : objects) {
 			if (!forgetInjectedObject(object, objectSupplier))
 				continue; // not injected at this time
-			processAnnotated(PreDestroy.class, object, object.getClass(), objectSupplier, null, new ArrayList<Class<?>>(5));
+			processAnnotated(getPlan(object.getClass()).preDestroy, object, objectSupplier, null);
 		}
 		forgetSupplier(objectSupplier);
 	}
@@ -400,16 +495,13 @@ public class InjectorImpl implements IInjector {
 	private Object[] resolveArgs(Requestor requestor, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier, boolean uninject, boolean initial, boolean track) {
 		IObjectDescriptor[] descriptors = requestor.getDependentObjects();
 
-		// 0) initial fill - all values are unresolved
+		// 1) initial fill - all values are unresolved unless we have a Provider<T>
 		Object[] actualArgs = new Object[descriptors.length];
-		Arrays.fill(actualArgs, NOT_A_VALUE);
-
-		// 1) check if we have a Provider<T>
 		for (int i = 0; i < actualArgs.length; i++) {
-			Class<?> providerClass = getProviderType(descriptors[i].getDesiredType());
-			if (providerClass == null)
-				continue;
-			actualArgs[i] = new ProviderImpl<Class<?>>(descriptors[i], this, objectSupplier);
+			if (internal(descriptors[i]).getProviderType() != null)
+				actualArgs[i] = new ProviderImpl<Class<?>>(descriptors[i], this, objectSupplier);
+			else
+				actualArgs[i] = NOT_A_VALUE;
 		}
 
 		// 2) use the temporary supplier
@@ -420,106 +512,63 @@ public class InjectorImpl implements IInjector {
 		if (objectSupplier != null)
 			objectSupplier.get(descriptors, actualArgs, requestor, initial, requestor.shouldTrack() && track, requestor.shouldGroupUpdates());
 
-		// 4) try extended suppliers
+		// 4) resolve the remaining arguments and check values, one argument at a time
+		boolean makeImplied = !uninject && !requestor.isOptional();
 		for (int i = 0; i < actualArgs.length; i++) {
-			if (actualArgs[i] != NOT_A_VALUE)
-				continue; // already resolved
-			ExtendedObjectSupplier extendedSupplier = findExtendedSupplier(descriptors[i], objectSupplier);
-			if (extendedSupplier == null)
-				continue;
-			actualArgs[i] = extendedSupplier.get(descriptors[i], requestor, requestor.shouldTrack() && track, requestor.shouldGroupUpdates());
+			ObjectDescriptor descriptor = internal(descriptors[i]);
+			if (actualArgs[i] == NOT_A_VALUE)
+				actualArgs[i] = resolveArg(descriptors[i], descriptor, requestor, objectSupplier, tempSupplier, makeImplied, track);
+
+			// check that values are of a correct type
+			Object value = actualArgs[i];
+			if (value != null && value != NOT_A_VALUE && !descriptor.getValueClass().isAssignableFrom(value.getClass()))
+				actualArgs[i] = NOT_A_VALUE;
+			// uninject or optional - fill defaults
+			if (actualArgs[i] == NOT_A_VALUE && descriptor.isOptional())
+				actualArgs[i] = descriptor.getDefaultValue();
 		}
+		return actualArgs;
+	}
 
-		// 5) try the bindings
-		for (int i = 0; i < actualArgs.length; i++) {
-			if (actualArgs[i] != NOT_A_VALUE)
-				continue; // already resolved
-			Binding binding = findBinding(descriptors[i]);
-			if (binding != null)
-				actualArgs[i] = internalMake(binding.getImplementationClass(), objectSupplier, tempSupplier);
-		}
-
-		// 5) create simple classes (implied bindings) - unless we uninject or optional
-		if (!uninject && !requestor.isOptional()) {
-			for (int i = 0; i < actualArgs.length; i++) {
-				if (actualArgs[i] != NOT_A_VALUE)
-					continue; // already resolved
-				if (descriptors[i].hasQualifier(Optional.class))
-					continue;
-				try {
-					actualArgs[i] = internalMake(getDesiredClass(descriptors[i].getDesiredType()), objectSupplier, tempSupplier);
-				} catch (InjectionException e) {
-					// ignore
-				}
-			}
+	/**
+	 * Resolves an argument not provided by the primary or temporary suppliers.
+	 */
+	private Object resolveArg(IObjectDescriptor descriptor, ObjectDescriptor internalDescriptor, Requestor requestor, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier, boolean makeImplied, boolean track) {
+		// try extended suppliers
+		ExtendedObjectSupplier extendedSupplier = findExtendedSupplier(descriptor, objectSupplier);
+		if (extendedSupplier != null) {
+			Object value = extendedSupplier.get(descriptor, requestor, requestor.shouldTrack() && track, requestor.shouldGroupUpdates());
+			if (value != NOT_A_VALUE)
+				return value;
 		}
 
-		// 6) post process
-		for (int i = 0; i < descriptors.length; i++) {
-			// check that values are of a correct type
-			if (actualArgs[i] != null && actualArgs[i] != IInjector.NOT_A_VALUE) {
-				Class<?> descriptorsClass = getDesiredClass(descriptors[i].getDesiredType());
-				if (descriptorsClass.isPrimitive()) { // support type autoboxing
-					if (descriptorsClass.equals(boolean.class))
-						descriptorsClass = Boolean.class;
-					else if (descriptorsClass.equals(int.class))
-						descriptorsClass = Integer.class;
-					else if (descriptorsClass.equals(char.class))
-						descriptorsClass = Character.class;
-					else if (descriptorsClass.equals(float.class))
-						descriptorsClass = Float.class;
-					else if (descriptorsClass.equals(double.class))
-						descriptorsClass = Double.class;
-					else if (descriptorsClass.equals(long.class))
-						descriptorsClass = Long.class;
-					else if (descriptorsClass.equals(short.class))
-						descriptorsClass = Short.class;
-					else if (descriptorsClass.equals(byte.class))
-						descriptorsClass = Byte.class;
-				}
-				if (!descriptorsClass.isAssignableFrom(actualArgs[i].getClass()))
-					actualArgs[i] = IInjector.NOT_A_VALUE;
-			}
-			if (actualArgs[i] == IInjector.NOT_A_VALUE) { // still unresolved?
-				if (descriptors[i].hasQualifier(Optional.class)) { // uninject or optional - fill defaults
-					Class<?> descriptorsClass = getDesiredClass(descriptors[i].getDesiredType());
-					if (descriptorsClass.isPrimitive()) {
-						if (descriptorsClass.equals(boolean.class))
-							actualArgs[i] = DEFAULT_BOOLEAN;
-						else if (descriptorsClass.equals(int.class))
-							actualArgs[i] = DEFAULT_INTEGER;
-						else if (descriptorsClass.equals(char.class))
-							actualArgs[i] = DEFAULT_CHAR;
-						else if (descriptorsClass.equals(float.class))
-							actualArgs[i] = DEFAULT_FLOAT;
-						else if (descriptorsClass.equals(double.class))
-							actualArgs[i] = DEFAULT_DOUBLE;
-						else if (descriptorsClass.equals(long.class))
-							actualArgs[i] = DEFAULT_LONG;
-						else if (descriptorsClass.equals(short.class))
-							actualArgs[i] = DEFAULT_SHORT;
-						else if (descriptorsClass.equals(byte.class))
-							actualArgs[i] = DEFAULT_BYTE;
-					} else
-						actualArgs[i] = null;
-				}
+		// try the bindings
+		Binding binding = findBinding(descriptor);
+		if (binding != null)
+			return internalMake(binding.getImplementationClass(), objectSupplier, tempSupplier);
+
+		// create simple classes (implied bindings) - unless we uninject or optional
+		if (makeImplied && !internalDescriptor.isOptional()) {
+			try {
+				return internalMake(internalDescriptor.getDesiredClass(), objectSupplier, tempSupplier);
+			} catch (InjectionException e) {
+				// ignore
 			}
 		}
-		return actualArgs;
+		return NOT_A_VALUE;
+	}
+
+	static private ObjectDescriptor internal(IObjectDescriptor descriptor) {
+		if (descriptor instanceof ObjectDescriptor)
+			return (ObjectDescriptor) descriptor;
+		return new ObjectDescriptor(descriptor.getDesiredType(), descriptor.getQualifiers());
 	}
 
 	private ExtendedObjectSupplier findExtendedSupplier(IObjectDescriptor descriptor, PrimaryObjectSupplier objectSupplier) {
-		Annotation[] qualifiers = descriptor.getQualifiers();
-		if (qualifiers == null)
+		String[] qualifierTypeNames = internal(descriptor).getQualifierTypeNames();
+		if (qualifierTypeNames == null)
 			return null;
-		for (Annotation qualifier : qualifiers) {
-			String key;
-			Type type = qualifier.annotationType();
-			if (type instanceof Class<?>) {
-				key = ((Class<?>) type).getName();
-			} else
-				continue;
-
+		for (String key : qualifierTypeNames) {
 			ExtendedObjectSupplier supplier;
 			try {
 				// use qualified name to refer to a class that might be missing
@@ -542,203 +591,65 @@ public class InjectorImpl implements IInjector {
 	}
 
 	private void processClassHierarchy(Object userObject, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier, boolean track, boolean normalOrder, List<Requestor> requestors) {
-		processClass(userObject, objectSupplier, tempSupplier, (userObject == null) ? null : userObject.getClass(), new ArrayList<Class<?>>(5), track, normalOrder, requestors);
-	}
-
-	/**
-	 * Make the processor visit all declared members on the given class and all superclasses
-	 */
-	private void processClass(Object userObject, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier, Class<?> objectsClass, ArrayList<Class<?>> classHierarchy, boolean track, boolean normalOrder, List<Requestor> requestors) {
 		// order: superclass, fields, methods
-		if (objectsClass != null) {
-			Class<?> superClass = objectsClass.getSuperclass();
-			if (superClass != null && !superClass.getName().equals(JAVA_OBJECT)) {
-				classHierarchy.add(objectsClass);
-				processClass(userObject, objectSupplier, tempSupplier, superClass, classHierarchy, track, normalOrder, requestors);
-				classHierarchy.remove(objectsClass);
+		InjectionPlan plan = getPlan(userObject.getClass());
+		for (InjectionPlan.ClassPlan classPlan : plan.classes) {
+			boolean injectStatic = (classPlan.staticInjected != null) && classPlan.staticInjected.compareAndSet(false, true);
+			if (normalOrder) {
+				processFields(userObject, objectSupplier, tempSupplier, classPlan.fields, injectStatic, track, requestors);
+				processMethods(userObject, objectSupplier, tempSupplier, classPlan.methods, injectStatic, track, requestors);
+			} else {
+				processMethods(userObject, objectSupplier, tempSupplier, classPlan.methods, injectStatic, track, requestors);
+				processFields(userObject, objectSupplier, tempSupplier, classPlan.fields, injectStatic, track, requestors);
 			}
 		}
-		boolean injectedStaticFields;
-		boolean injectedStaticMethods;
-		if (normalOrder) {
-			injectedStaticFields = processFields(userObject, objectSupplier, tempSupplier, objectsClass, track, requestors);
-			injectedStaticMethods = processMethods(userObject, objectSupplier, tempSupplier, objectsClass, classHierarchy, track, requestors);
-		} else {
-			injectedStaticMethods = processMethods(userObject, objectSupplier, tempSupplier, objectsClass, classHierarchy, track, requestors);
-			injectedStaticFields = processFields(userObject, objectSupplier, tempSupplier, objectsClass, track, requestors);
-		}
-		if (injectedStaticFields || injectedStaticMethods)
-			rememberInjectedStatic(objectsClass);
 	}
 
-	private boolean hasInjectedStatic(Class<?> objectsClass) {
-		synchronized (injectedClasses) {
-			for (WeakReference<Class<?>> ref : injectedClasses) {
-				Class<?> injectedClass = ref.get();
-				if (injectedClass == null)
-					continue;
-				if (injectedClass == objectsClass) // use pointer comparison
-					return true;
-			}
-			return false;
+	private InjectionPlan getPlan(Class<?> objectsClass) {
+		synchronized (plans) {
+			Reference<InjectionPlan> ref = plans.get(objectsClass);
+			InjectionPlan plan = (ref == null) ? null : ref.get();
+			if (plan != null)
+				return plan;
 		}
-	}
-
-	private void rememberInjectedStatic(Class<?> objectsClass) {
-		synchronized (injectedClasses) {
-			injectedClasses.add(new WeakReference<Class<?>>(objectsClass));
+		InjectionPlan plan = new InjectionPlan(objectsClass, staticFlags);
+		synchronized (plans) {
+			plans.put(objectsClass, new WeakReference<InjectionPlan>(plan));
 		}
+		return plan;
 	}
 
 	/**
-	 * Make the processor visit all declared fields on the given class.
+	 * Creates requestors for the injected fields of a class.
 	 */
-	private boolean processFields(Object userObject, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier, Class<?> objectsClass, boolean track, List<Requestor> requestors) {
-		boolean injectedStatic = false;
-		Field[] fields = objectsClass.getDeclaredFields();
-		for (int i = 0; i < fields.length; i++) {
-			Field field = fields[i];
-			if (Modifier.isStatic(field.getModifiers())) {
-				if (hasInjectedStatic(objectsClass))
-					continue;
-				injectedStatic = true;
-			}
-			if (!field.isAnnotationPresent(Inject.class))
+	private void processFields(Object userObject, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier, InjectionPlan.Site[] fields, boolean injectStatic, boolean track, List<Requestor> requestors) {
+		for (InjectionPlan.Site field : fields) {
+			if (field.isStatic && !injectStatic)
 				continue;
 			requestors.add(new FieldRequestor(field, this, objectSupplier, tempSupplier, userObject, track));
 		}
-		return injectedStatic;
 	}
 
 	/**
-	 * Make the processor visit all declared methods on the given class.
+	 * Creates requestors for the injected methods of a class.
 	 */
-	private boolean processMethods(final Object userObject, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier, Class<?> objectsClass, ArrayList<Class<?>> classHierarchy, boolean track, List<Requestor> requestors) {
-		boolean injectedStatic = false;
-		Method[] methods = getDeclaredMethods(objectsClass);
-		for (int i = 0; i < methods.length; i++) {
-			final Method method = methods[i];
-
-			Boolean isOverridden = null;
-			Map<Method, Boolean> methodMap = null;
-			Class<?> originalClass = userObject.getClass();
-			if (isOverriddenCache.containsKey(originalClass)) {
-				methodMap = isOverriddenCache.get(originalClass);
-				if (methodMap.containsKey(method))
-					isOverridden = methodMap.get(method);
-			}
-			if (isOverridden == null) {
-				isOverridden = isOverridden(method, classHierarchy);
-				if (methodMap == null) {
-					methodMap = new WeakHashMap<Method, Boolean>();
-					isOverriddenCache.put(originalClass, methodMap);
-				}
-				methodMap.put(method, isOverridden);
-			}
-
-			if (isOverridden)
-				continue; // process in the subclass
-			if (Modifier.isStatic(method.getModifiers())) {
-				if (hasInjectedStatic(objectsClass))
-					continue;
-				injectedStatic = true;
-			}
-			if (!method.isAnnotationPresent(Inject.class))
+	private void processMethods(Object userObject, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier, InjectionPlan.Site[] methods, boolean injectStatic, boolean track, List<Requestor> requestors) {
+		for (InjectionPlan.Site method : methods) {
+			if (method.isStatic && !injectStatic)
 				continue;
 			requestors.add(new MethodRequestor(method, this, objectSupplier, tempSupplier, userObject, track));
 		}
-		return injectedStatic;
-	}
-
-	/**
-	 * Checks if a given method is overridden with an injectable method.
-	 */
-	private boolean isOverridden(Method method, ArrayList<Class<?>> classHierarchy) {
-		int modifiers = method.getModifiers();
-		if (Modifier.isPrivate(modifiers))
-			return false;
-		if (Modifier.isStatic(modifiers))
-			return false;
-		// method is not private if we reached this line, check not(public OR protected)
-		boolean isDefault = !(Modifier.isPublic(modifiers) || Modifier.isProtected(modifiers));
-
-		String methodName = method.getName();
-		Class<?>[] methodParams = method.getParameterTypes();
-		int methodParamsLength = method.getParameterTypes().length;
-		for (Class<?> subClass : classHierarchy) {
-			Method[] methods = subClass.getDeclaredMethods();
-			Method matchingMethod = null;
-			for (Method candidate : methods) {
-				if (!methodName.equals(candidate.getName()))
-					continue;
-				Class<?>[] candidateParams = candidate.getParameterTypes();
-				if (candidateParams.length != methodParamsLength)
-					continue;
-				boolean paramsMatch = true;
-				for (int i = 0; i < methodParamsLength; i++) {
-					if (candidateParams[i].equals(methodParams[i])) // strictly speaking, need to add erasures
-						continue;
-					paramsMatch = false;
-				}
-				if (!paramsMatch)
-					continue;
-				matchingMethod = candidate;
-				break;
-			}
-			if (matchingMethod == null)
-				continue;
-
-			if (isDefault) { // must be in the same package to override
-				Package originalPackage = method.getDeclaringClass().getPackage();
-				Package overridePackage = subClass.getPackage();
-
-				if (originalPackage == null && overridePackage == null)
-					return true;
-				if (originalPackage == null || overridePackage == null)
-					return false;
-				if (originalPackage.equals(overridePackage))
-					return true;
-			} else
-				return true;
-		}
-		return false;
 	}
 
 	private Method[] getDeclaredMethods(Class<?> c) {
-		Method[] methods = methodsCache.get(c);
-		if (methods == null) {
-			methods = c.getDeclaredMethods();
-			methodsCache.put(c, methods);
-		}
-		return methods;
-	}
-
-	private Class<?> getDesiredClass(Type desiredType) {
-		if (desiredType instanceof Class<?>)
-			return (Class<?>) desiredType;
-		if (desiredType instanceof ParameterizedType) {
-			Type rawType = ((ParameterizedType) desiredType).getRawType();
-			if (rawType instanceof Class<?>)
-				return (Class<?>) rawType;
+		synchronized (methodsCache) {
+			Method[] methods = methodsCache.get(c);
+			if (methods == null) {
+				methods = c.getDeclaredMethods();
+				methodsCache.put(c, methods);
+			}
+			return methods;
 		}
-		return null;
-	}
-
-	/**
-	 * Returns null if not a provider
-	 */
-	private Class<?> getProviderType(Type type) {
-		if (!(type instanceof ParameterizedType))
-			return null;
-		Type rawType = ((ParameterizedType) type).getRawType();
-		if (!Provider.class.equals(rawType))
-			return null;
-		Type[] actualTypes = ((ParameterizedType) type).getActualTypeArguments();
-		if (actualTypes.length != 1)
-			return null;
-		if (!(actualTypes[0] instanceof Class<?>))
-			return null;
-		return (Class<?>) actualTypes[0];
 	}
 
 	public IBinding addBinding(Class<?> clazz) {
@@ -747,90 +658,27 @@ public class InjectorImpl implements IInjector {
 
 	public IBinding addBinding(IBinding binding) {
 		Binding internalBinding = (Binding) binding;
-		Class<?> clazz = internalBinding.getDescribedClass();
-		synchronized (bindings) {
-			if (bindings.containsKey(clazz)) {
-				Set<Binding> collection = bindings.get(clazz);
-				String desiredQualifierName = internalBinding.getQualifierName();
-				for (Iterator<Binding> i = collection.iterator(); i.hasNext();) {
-					Binding collectionBinding = i.next();
-					if (eq(collectionBinding.getQualifierName(), desiredQualifierName)) {
-						i.remove();
-						break;
-					}
-				}
-				collection.add(internalBinding);
-			} else {
-				Set<Binding> collection = new HashSet<Binding>(1);
-				collection.add(internalBinding);
-				bindings.put(clazz, collection);
-			}
-		}
+		bindings.put(new BindingKey(internalBinding.getDescribedClass(), internalBinding.getQualifierName()), internalBinding);
 		return binding;
 	}
 
 	private Binding findBinding(IObjectDescriptor descriptor) {
-		Class<?> desiredClass = getProviderType(descriptor.getDesiredType());
+		if (bindings.isEmpty())
+			return null;
+		ObjectDescriptor internalDescriptor = internal(descriptor);
+		Class<?> desiredClass = internalDescriptor.getProviderType();
 		if (desiredClass == null)
-			desiredClass = getDesiredClass(descriptor.getDesiredType());
-		synchronized (bindings) {
-			if (!bindings.containsKey(desiredClass))
-				return null;
-			Set<Binding> collection = bindings.get(desiredClass);
-			String desiredQualifierName = null;
-			if (descriptor.hasQualifier(Named.class)) {
-				Named namedAnnotation = descriptor.getQualifier(Named.class);
-				desiredQualifierName = namedAnnotation.value();
-			} else {
-				Annotation[] annotations = descriptor.getQualifiers();
-				if (annotations != null) {
-					for (Annotation annotation : annotations) {
-						desiredQualifierName = annotation.annotationType().getName();
-						break;
-					}
-				}
-			}
-
-			for (Iterator<Binding> i = collection.iterator(); i.hasNext();) {
-				Binding collectionBinding = i.next();
-				if (eq(collectionBinding.getQualifierName(), desiredQualifierName))
-					return collectionBinding;
-			}
-		}
-		return null;
+			desiredClass = internalDescriptor.getDesiredClass();
+		return bindings.get(new BindingKey(desiredClass, internalDescriptor.getQualifierName()));
 	}
 
-	/**
-	 * Are two, possibly null, string equal?
-	 */
-	private boolean eq(String str1, String str2) {
-		if (str1 == null && str2 == null)
-			return true;
-		if (str1 == null || str2 == null)
-			return false;
-		return str1.equals(str2);
-	}
-
-	private void processAnnotated(Class<? extends Annotation> annotation, Object userObject, Class<?> objectClass, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier, ArrayList<Class<?>> classHierarchy) {
-		Class<?> superClass = objectClass.getSuperclass();
-		if (superClass != null && !superClass.getName().equals(JAVA_OBJECT)) {
-			classHierarchy.add(objectClass);
-			processAnnotated(annotation, userObject, superClass, objectSupplier, tempSupplier, classHierarchy);
-			classHierarchy.remove(objectClass);
-		}
-		Method[] methods = getDeclaredMethods(objectClass);
-		for (int i = 0; i < methods.length; i++) {
-			Method method = methods[i];
-			if (!method.isAnnotationPresent(annotation))
-				continue;
-			if (isOverridden(method, classHierarchy))
-				continue;
-
+	private void processAnnotated(InjectionPlan.Site[] methods, Object userObject, PrimaryObjectSupplier objectSupplier, PrimaryObjectSupplier tempSupplier) {
+		for (InjectionPlan.Site method : methods) {
 			MethodRequestor requestor = new MethodRequestor(method, this, objectSupplier, tempSupplier, userObject, false);
 			Object[] actualArgs = resolveArgs(requestor, objectSupplier, tempSupplier, false, false, false);
 			int unresolved = unresolved(actualArgs);
 			if (unresolved != -1) {
-				if (method.isAnnotationPresent(Optional.class))
+				if (method.optional)
 					continue;
 				reportUnresolvedArgument(requestor, unresolved);
 			}
@@ -33,6 +33,11 @@ public class MethodRequestor extends Requestor {
 		this.method = method;
 	}
 
+	MethodRequestor(InjectionPlan.Site site, IInjector injector, PrimaryObjectSupplier primarySupplier, PrimaryObjectSupplier tempSupplier, Object requestingObject, boolean track) {
+		super(injector, primarySupplier, tempSupplier, requestingObject, track, site.groupUpdates, site.optional, site.descriptors);
+		this.method = (Method) site.member;
+	}
+
 	public Object execute() throws InjectionException {
 		if (actualArgs == null) {
 			if (method.getParameterTypes().length > 0)
@@ -42,11 +47,10 @@ public class MethodRequestor extends Requestor {
 		if (userObject == null)
 			return null;
 		Object result = null;
-		boolean wasAccessible = true;
-		if (!method.isAccessible()) {
+		// methods are cached per class by the injector; they are made accessible once and stay
+		// accessible so that concurrent calls of the same method do not interfere
+		if (!method.isAccessible())
 			method.setAccessible(true);
-			wasAccessible = false;
-		}
 		boolean pausedRecording = false;
 		if ((primarySupplier != null)) {
 			primarySupplier.pauseRecording();
@@ -62,8 +66,6 @@ public class MethodRequestor extends Requestor {
 			Throwable originalException = e.getCause();
 			throw new InjectionException((originalException != null) ? originalException : e);
 		} finally {
-			if (!wasAccessible)
-				method.setAccessible(false);
 			if (pausedRecording)
 				primarySupplier.resumeRecoding();
 			clearResolvedArgs();
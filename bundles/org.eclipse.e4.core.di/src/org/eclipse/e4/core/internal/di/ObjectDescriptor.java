@@ -11,26 +11,89 @@
 package org.eclipse.e4.core.internal.di;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.List;
+import javax.inject.Named;
+import javax.inject.Provider;
 import javax.inject.Qualifier;
+import org.eclipse.e4.core.di.annotations.Optional;
 import org.eclipse.e4.core.di.suppliers.IObjectDescriptor;
+import org.eclipse.e4.core.internal.di.shared.BaseType;
+import org.eclipse.e4.core.internal.di.shared.DescriptorKeys;
 
 public class ObjectDescriptor implements IObjectDescriptor {
 
+	/**
+	 * Qualifier bit set if the descriptor has the {@link Named} qualifier.
+	 */
+	final static public int NAMED = 1;
+
+	/**
+	 * Qualifier bit set if the descriptor has the {@link Optional} qualifier.
+	 */
+	final static public int OPTIONAL = 2;
+
+	/**
+	 * Qualifier bit set if the descriptor has any other qualifiers.
+	 */
+	final static public int EXTENDED = 4;
+
 	final private Type desiredType;
 	final private Annotation[] annotations;
+	final private String qualifierName;
+	final private int qualifierBits;
+	final private String[] qualifierTypeNames;
+	final private String keyName;
+
+	// precomputed so that resolving an argument does not need to inspect the type again
+	final private Class<?> desiredClass;
+	final private Class<?> providerType;
+	final private Class<?> valueClass;
+	final private BaseType baseType;
 
 	public ObjectDescriptor(Type desiredType, Annotation[] allAnnotations) {
 		this.desiredType = desiredType;
 		this.annotations = (allAnnotations == null) ? null : qualifiers(allAnnotations);
+		this.qualifierName = qualifierName(annotations);
+		this.qualifierBits = qualifierBits(annotations);
+		this.qualifierTypeNames = qualifierTypeNames(annotations);
+		this.desiredClass = desiredClass(desiredType);
+		this.keyName = ((qualifierBits & NAMED) != 0) ? getQualifier(Named.class).value() : DescriptorKeys.typeToString(desiredType);
+		this.providerType = providerType(desiredType);
+		this.baseType = BaseType.get(desiredClass);
+		this.valueClass = (baseType == null) ? desiredClass : baseType.getWrapperClass();
 	}
 
 	public Type getDesiredType() {
 		return desiredType;
 	}
 
+	/**
+	 * Returns the qualifiers of this descriptor as a combination of {@link #NAMED},
+	 * {@link #OPTIONAL} and {@link #EXTENDED}.
+	 */
+	public int getQualifierBits() {
+		return qualifierBits;
+	}
+
+	/**
+	 * Returns the name a value for this descriptor is looked up by: the value of the
+	 * {@link Named} qualifier if present, otherwise the name of the desired class.
+	 * Returns <code>null</code> if the desired type is not a class.
+	 */
+	public String getKeyName() {
+		return keyName;
+	}
+
+	/**
+	 * Returns the class names of the qualifiers, or <code>null</code> if there are no qualifiers.
+	 */
+	String[] getQualifierTypeNames() {
+		return qualifierTypeNames;
+	}
+
 	public boolean hasQualifier(Class<? extends Annotation> clazz) {
 		if (clazz == null)
 			return false;
@@ -47,6 +110,122 @@ public class ObjectDescriptor implements IObjectDescriptor {
 		return annotations;
 	}
 
+	/**
+	 * Returns the raw class of the desired type, or <code>null</code> if it can not be determined.
+	 */
+	Class<?> getDesiredClass() {
+		return desiredClass;
+	}
+
+	/**
+	 * Returns the type provided if this describes a {@link Provider}, <code>null</code> otherwise.
+	 */
+	Class<?> getProviderType() {
+		return providerType;
+	}
+
+	/**
+	 * Returns the class that values have to be instances of; primitive types are autoboxed.
+	 */
+	Class<?> getValueClass() {
+		return valueClass;
+	}
+
+	/**
+	 * Returns the base type if the desired class is a primitive or wrapper class,
+	 * <code>null</code> otherwise.
+	 */
+	public BaseType getBaseType() {
+		return baseType;
+	}
+
+	/**
+	 * Returns the value used if the argument is optional and could not be resolved.
+	 */
+	Object getDefaultValue() {
+		if (baseType != null && desiredClass.isPrimitive())
+			return baseType.getDefaultValue();
+		return null;
+	}
+
+	boolean isOptional() {
+		return (qualifierBits & OPTIONAL) != 0;
+	}
+
+	/**
+	 * Returns the name used to match bindings, or <code>null</code> if there are no qualifiers.
+	 */
+	public String getQualifierName() {
+		return qualifierName;
+	}
+
+	/**
+	 * Returns the name used to match bindings for the given qualifiers: the value of the
+	 * {@link Named} qualifier if present, otherwise the name of the first qualifier type.
+	 */
+	static String qualifierName(Annotation[] qualifiers) {
+		if (qualifiers == null || qualifiers.length == 0)
+			return null;
+		for (Annotation annotation : qualifiers) {
+			if (annotation.annotationType().equals(Named.class))
+				return ((Named) annotation).value();
+		}
+		return qualifiers[0].annotationType().getName();
+	}
+
+	static private int qualifierBits(Annotation[] qualifiers) {
+		if (qualifiers == null)
+			return 0;
+		int bits = 0;
+		for (Annotation annotation : qualifiers) {
+			Class<? extends Annotation> type = annotation.annotationType();
+			if (type.equals(Named.class))
+				bits |= NAMED;
+			else if (type.equals(Optional.class))
+				bits |= OPTIONAL;
+			else
+				bits |= EXTENDED;
+		}
+		return bits;
+	}
+
+	static private String[] qualifierTypeNames(Annotation[] qualifiers) {
+		if (qualifiers == null)
+			return null;
+		String[] result = new String[qualifiers.length];
+		for (int i = 0; i < qualifiers.length; i++)
+			result[i] = qualifiers[i].annotationType().getName();
+		return result;
+	}
+
+	static Class<?> desiredClass(Type desiredType) {
+		if (desiredType instanceof Class<?>)
+			return (Class<?>) desiredType;
+		if (desiredType instanceof ParameterizedType) {
+			Type rawType = ((ParameterizedType) desiredType).getRawType();
+			if (rawType instanceof Class<?>)
+				return (Class<?>) rawType;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns null if not a provider
+	 */
+	static Class<?> providerType(Type type) {
+		if (!(type instanceof ParameterizedType))
+			return null;
+		Type rawType = ((ParameterizedType) type).getRawType();
+		if (!Provider.class.equals(rawType))
+			return null;
+		Type[] actualTypes = ((ParameterizedType) type).getActualTypeArguments();
+		if (actualTypes.length != 1)
+			return null;
+		if (!(actualTypes[0] instanceof Class<?>))
+			return null;
+		return (Class<?>) actualTypes[0];
+	}
+
 	/**
 	 * Returns null if qualifier is not present
 	 */
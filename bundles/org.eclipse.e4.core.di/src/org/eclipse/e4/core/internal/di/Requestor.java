@@ -40,6 +40,13 @@ abstract public class Requestor implements IRequestor {
 	protected abstract IObjectDescriptor[] calcDependentObjects();
 
 	public Requestor(AccessibleObject reflectionObject, IInjector injector, PrimaryObjectSupplier primarySupplier, PrimaryObjectSupplier tempSupplier, Object requestingObject, boolean track) {
+		this(injector, primarySupplier, tempSupplier, requestingObject, track, (reflectionObject == null) ? false : reflectionObject.isAnnotationPresent(GroupUpdates.class), (reflectionObject == null) ? false : reflectionObject.isAnnotationPresent(Optional.class), null);
+	}
+
+	/**
+	 * Creates a requestor with precomputed annotation flags and dependent objects.
+	 */
+	Requestor(IInjector injector, PrimaryObjectSupplier primarySupplier, PrimaryObjectSupplier tempSupplier, Object requestingObject, boolean track, boolean groupUpdates, boolean isOptional, IObjectDescriptor[] objectDescriptors) {
 		this.injector = injector;
 		this.primarySupplier = primarySupplier;
 		this.tempSupplier = tempSupplier;
@@ -48,8 +55,9 @@ abstract public class Requestor implements IRequestor {
 		else
 			objectRef = null;
 		this.track = track;
-		groupUpdates = (reflectionObject == null) ? false : reflectionObject.isAnnotationPresent(GroupUpdates.class);
-		isOptional = (reflectionObject == null) ? false : reflectionObject.isAnnotationPresent(Optional.class);
+		this.groupUpdates = groupUpdates;
+		this.isOptional = isOptional;
+		this.objectDescriptors = objectDescriptors;
 	}
 
 	public IInjector getInjector() {
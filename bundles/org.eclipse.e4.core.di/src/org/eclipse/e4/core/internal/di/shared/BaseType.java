@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.di.shared;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.eclipse.e4.core.di.suppliers.IObjectDescriptor;
+import org.eclipse.e4.core.internal.di.ObjectDescriptor;
+
+/**
+ * Describes a primitive type together with its wrapper class. Both the primitive
+ * class and the wrapper class map to the same base type.
+ */
+final public class BaseType {
+
+	static final public BaseType BOOLEAN = new BaseType(boolean.class, Boolean.class, Boolean.FALSE);
+	static final public BaseType INT = new BaseType(int.class, Integer.class, new Integer(0));
+	static final public BaseType CHAR = new BaseType(char.class, Character.class, new Character((char) 0));
+	static final public BaseType FLOAT = new BaseType(float.class, Float.class, new Float(0.0f));
+	static final public BaseType DOUBLE = new BaseType(double.class, Double.class, new Double(0.0d));
+	static final public BaseType LONG = new BaseType(long.class, Long.class, new Long(0L));
+	static final public BaseType SHORT = new BaseType(short.class, Short.class, new Short((short) 0));
+	static final public BaseType BYTE = new BaseType(byte.class, Byte.class, new Byte((byte) 0));
+
+	static final private Map<Class<?>, BaseType> types = new HashMap<Class<?>, BaseType>(32);
+
+	static {
+		BaseType[] all = new BaseType[] {BOOLEAN, INT, CHAR, FLOAT, DOUBLE, LONG, SHORT, BYTE};
+		for (BaseType type : all) {
+			types.put(type.primitiveClass, type);
+			types.put(type.wrapperClass, type);
+		}
+	}
+
+	final private Class<?> primitiveClass;
+	final private Class<?> wrapperClass;
+	final private Object defaultValue;
+
+	private BaseType(Class<?> primitiveClass, Class<?> wrapperClass, Object defaultValue) {
+		this.primitiveClass = primitiveClass;
+		this.wrapperClass = wrapperClass;
+		this.defaultValue = defaultValue;
+	}
+
+	/**
+	 * Returns the base type of a primitive or wrapper class, or <code>null</code> for other classes.
+	 */
+	static public BaseType get(Class<?> clazz) {
+		if (clazz == null)
+			return null;
+		return types.get(clazz);
+	}
+
+	/**
+	 * Returns the base type of the class described by the descriptor, or <code>null</code>
+	 * if it is neither a primitive nor a wrapper class.
+	 */
+	static public BaseType get(IObjectDescriptor descriptor) {
+		if (descriptor instanceof ObjectDescriptor)
+			return ((ObjectDescriptor) descriptor).getBaseType();
+		if (descriptor.getDesiredType() instanceof Class<?>)
+			return get((Class<?>) descriptor.getDesiredType());
+		return null;
+	}
+
+	public Class<?> getPrimitiveClass() {
+		return primitiveClass;
+	}
+
+	public Class<?> getWrapperClass() {
+		return wrapperClass;
+	}
+
+	/**
+	 * Returns the value used for an optional primitive that could not be resolved.
+	 */
+	public Object getDefaultValue() {
+		return defaultValue;
+	}
+
+	@Override
+	public String toString() {
+		return primitiveClass.getName();
+	}
+}
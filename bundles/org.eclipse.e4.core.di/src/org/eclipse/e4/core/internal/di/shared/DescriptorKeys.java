@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.di.shared;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import javax.inject.Named;
+import org.eclipse.e4.core.di.suppliers.IObjectDescriptor;
+import org.eclipse.e4.core.internal.di.ObjectDescriptor;
+
+/**
+ * Gives suppliers access to the information that descriptors created by the injector
+ * precompute, with fallbacks for other descriptors.
+ */
+final public class DescriptorKeys {
+
+	private DescriptorKeys() {
+		// prevents instantiations
+	}
+
+	/**
+	 * Returns the name a value for the descriptor is looked up by: the value of the
+	 * {@link Named} qualifier if present, otherwise the name of the desired class.
+	 * Returns <code>null</code> if the desired type is not a class.
+	 */
+	static public String getKeyName(IObjectDescriptor descriptor) {
+		if (descriptor instanceof ObjectDescriptor)
+			return ((ObjectDescriptor) descriptor).getKeyName();
+		if (descriptor.hasQualifier(Named.class))
+			return descriptor.getQualifier(Named.class).value();
+		return typeToString(descriptor.getDesiredType());
+	}
+
+	/**
+	 * Returns <code>false</code> if the descriptor is known to have no qualifiers other
+	 * than {@link Named} and {@link org.eclipse.e4.core.di.annotations.Optional}.
+	 */
+	static public boolean mayHaveOtherQualifiers(IObjectDescriptor descriptor) {
+		if (descriptor instanceof ObjectDescriptor)
+			return (((ObjectDescriptor) descriptor).getQualifierBits() & ObjectDescriptor.EXTENDED) != 0;
+		return true;
+	}
+
+	/**
+	 * Returns the name of the class of the type, or <code>null</code> if the type is neither
+	 * a class nor a parameterized type.
+	 */
+	static public String typeToString(Type type) {
+		if (type == null)
+			return null;
+		if (type instanceof Class<?>)
+			return ((Class<?>) type).getName();
+		if (type instanceof ParameterizedType) {
+			Type rawType = ((ParameterizedType) type).getRawType();
+			return typeToString(rawType);
+		}
+		return null;
+	}
+}
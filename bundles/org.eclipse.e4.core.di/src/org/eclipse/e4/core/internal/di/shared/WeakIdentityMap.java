@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.di.shared;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A map with weakly referenced keys that are compared by identity rather than by
+ * <code>equals()</code>. Entries are removed once their keys have been garbage collected.
+ * <p>
+ * This class is not synchronized.
+ * </p>
+ */
+public class WeakIdentityMap<K, V> {
+
+	static private class WeakKey<T> extends WeakReference<T> {
+		final private int hash;
+
+		WeakKey(T referent, ReferenceQueue<? super T> queue) {
+			super(referent, queue);
+			hash = System.identityHashCode(referent);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			Object referent = get();
+			if (referent == null)
+				return false;
+			if (obj instanceof WeakKey<?>)
+				return referent == ((WeakKey<?>) obj).get();
+			if (obj instanceof LookupKey)
+				return referent == ((LookupKey) obj).key;
+			return false;
+		}
+	}
+
+	// used to look up entries without creating weak references
+	static private class LookupKey {
+		final Object key;
+
+		LookupKey(Object key) {
+			this.key = key;
+		}
+
+		public int hashCode() {
+			return System.identityHashCode(key);
+		}
+
+		public boolean equals(Object obj) {
+			if (obj instanceof WeakKey<?>)
+				return key == ((WeakKey<?>) obj).get();
+			if (obj instanceof LookupKey)
+				return key == ((LookupKey) obj).key;
+			return false;
+		}
+	}
+
+	final private Map<Object, V> map;
+	final private ReferenceQueue<K> queue = new ReferenceQueue<K>();
+
+	public WeakIdentityMap() {
+		map = new HashMap<Object, V>();
+	}
+
+	public WeakIdentityMap(int initialCapacity) {
+		map = new HashMap<Object, V>(initialCapacity);
+	}
+
+	/**
+	 * Creates a map that optionally keeps its keys and values in the order in which the keys
+	 * were first added.
+	 * @param insertionOrder <code>true</code> to keep the insertion order
+	 */
+	public WeakIdentityMap(boolean insertionOrder) {
+		map = insertionOrder ? new LinkedHashMap<Object, V>() : new HashMap<Object, V>();
+	}
+
+	public V get(K key) {
+		expunge();
+		return map.get(new LookupKey(key));
+	}
+
+	public boolean containsKey(K key) {
+		expunge();
+		return map.containsKey(new LookupKey(key));
+	}
+
+	public V put(K key, V value) {
+		expunge();
+		LookupKey lookupKey = new LookupKey(key);
+		if (map.containsKey(lookupKey))
+			return map.put(lookupKey, value); // keeps the existing weak key
+		map.put(new WeakKey<K>(key, queue), value);
+		return null;
+	}
+
+	public V remove(K key) {
+		expunge();
+		return map.remove(new LookupKey(key));
+	}
+
+	public int size() {
+		expunge();
+		return map.size();
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public void clear() {
+		map.clear();
+		while (queue.poll() != null) {
+			// drain
+		}
+	}
+
+	/**
+	 * Returns a snapshot of the keys that are still reachable.
+	 */
+	public List<K> keys() {
+		expunge();
+		List<K> result = new ArrayList<K>(map.size());
+		for (Object key : map.keySet()) {
+			@SuppressWarnings("unchecked")
+			K referent = ((WeakKey<K>) key).get();
+			if (referent != null)
+				result.add(referent);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a snapshot of the values of entries whose keys are still reachable.
+	 */
+	public List<V> values() {
+		expunge();
+		return new ArrayList<V>(map.values());
+	}
+
+	private void expunge() {
+		Reference<? extends K> ref;
+		while ((ref = queue.poll()) != null)
+			map.remove(ref);
+	}
+}
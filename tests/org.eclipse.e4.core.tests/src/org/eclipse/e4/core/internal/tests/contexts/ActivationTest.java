@@ -11,11 +11,18 @@
 
 package org.eclipse.e4.core.internal.tests.contexts;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import junit.framework.TestCase;
 
 import org.eclipse.e4.core.contexts.ContextFunction;
 import org.eclipse.e4.core.contexts.EclipseContextFactory;
 import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.contexts.RunAndTrack;
+import org.eclipse.e4.core.internal.contexts.EclipseContext;
+import org.eclipse.e4.core.internal.contexts.ILookupStrategy;
 
 public class ActivationTest extends TestCase {
 
@@ -104,4 +111,185 @@ public class ActivationTest extends TestCase {
 		assertEquals(child22, child2.getActiveLeaf());
 		assertEquals("child22", child2.get("testRAT"));
 	}
+
+	public void testLeafChangeNotifications() {
+		IEclipseContext rootContext = EclipseContextFactory.create("root");
+		IEclipseContext child1 = rootContext.createChild("child1");
+		IEclipseContext child11 = child1.createChild("child11");
+		IEclipseContext child12 = child1.createChild("child12");
+		IEclipseContext child2 = rootContext.createChild("child2");
+
+		final IEclipseContext[] leaf = new IEclipseContext[1];
+		final int[] runs = new int[1];
+		rootContext.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				leaf[0] = context.getActiveLeaf();
+				runs[0]++;
+				return true;
+			}
+		});
+		assertEquals(rootContext, leaf[0]);
+		assertEquals(1, runs[0]);
+
+		child11.activateBranch();
+		assertEquals(child11, leaf[0]);
+		int count = runs[0];
+
+		// changes outside of the active chain don't affect the leaf
+		child2.set("value", "a");
+		child12.activate();
+		child1.activate();
+		assertEquals(child12, rootContext.getActiveLeaf());
+		assertEquals(child12, leaf[0]);
+		assertEquals(count + 1, runs[0]);
+
+		child2.activate();
+		assertEquals(child2, leaf[0]);
+		assertEquals(count + 2, runs[0]);
+
+		// the inactive branch changes without affecting the leaf
+		child11.activate();
+		assertEquals(child2, leaf[0]);
+		assertEquals(count + 2, runs[0]);
+
+		child1.activate();
+		assertEquals(child11, leaf[0]);
+		assertEquals(count + 3, runs[0]);
+
+		child11.dispose();
+		assertEquals(child1, leaf[0]);
+		assertEquals(child1, rootContext.getActiveLeaf());
+		rootContext.dispose();
+	}
+
+	public void testReparentActiveChild() {
+		IEclipseContext rootContext = EclipseContextFactory.create("root");
+		IEclipseContext child1 = rootContext.createChild("child1");
+		IEclipseContext child2 = rootContext.createChild("child2");
+		IEclipseContext child21 = child2.createChild("child21");
+		IEclipseContext child = child1.createChild("child");
+		IEclipseContext grandChild = child.createChild("grandChild");
+
+		grandChild.activateBranch();
+		assertEquals(grandChild, rootContext.getActiveLeaf());
+		child21.activate();
+
+		child.setParent(child2);
+		assertEquals(child1, rootContext.getActiveLeaf());
+		assertEquals(child1, child1.getActiveLeaf());
+		assertEquals(child21, child2.getActiveLeaf());
+
+		child.activate();
+		assertEquals(grandChild, child2.getActiveLeaf());
+		child2.activate();
+		assertEquals(grandChild, rootContext.getActiveLeaf());
+		grandChild.deactivate();
+		assertEquals(child, rootContext.getActiveLeaf());
+		rootContext.dispose();
+	}
+
+	public void testReparentLeafListener() {
+		final List<String> lookups = new ArrayList<String>();
+		IEclipseContext rootContext = new EclipseContext(null, new ILookupStrategy() {
+			public Object lookup(String name, IEclipseContext context) {
+				lookups.add(name);
+				return null;
+			}
+
+			public boolean containsKey(String name, IEclipseContext context) {
+				lookups.add(name);
+				return false;
+			}
+
+			public void dispose() {
+				// nothing to dispose
+			}
+		});
+		IEclipseContext child1 = rootContext.createChild("child1");
+		IEclipseContext child2 = rootContext.createChild("child2");
+		IEclipseContext child = child1.createChild("child");
+		IEclipseContext grandChild = child.createChild("grandChild");
+		grandChild.activate();
+
+		final IEclipseContext[] leaf = new IEclipseContext[1];
+		child.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				leaf[0] = context.getActiveLeaf();
+				return true;
+			}
+		});
+		assertEquals(grandChild, leaf[0]);
+
+		// the active leaf does not depend on the parent, so the strategy has nothing to supply
+		lookups.clear();
+		child.setParent(child2);
+		assertTrue("Unexpected lookups: " + lookups, lookups.isEmpty());
+		assertEquals(grandChild, leaf[0]);
+		rootContext.dispose();
+	}
+
+	public void testActivateBranchNotifiesOnce() {
+		final IEclipseContext rootContext = EclipseContextFactory.create("root");
+		final IEclipseContext child1 = rootContext.createChild("child1");
+		final IEclipseContext child11 = child1.createChild("child11");
+		final IEclipseContext child111 = child11.createChild("child111");
+		IEclipseContext child2 = rootContext.createChild("child2");
+		child2.activate();
+
+		final List<String> states = new ArrayList<String>();
+		rootContext.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				// depends on the active child of every level of the branch
+				states.add(rootContext.getActiveChild() + "/" + child1.getActiveChild() + "/" + child11.getActiveChild());
+				return true;
+			}
+		});
+		states.clear();
+
+		child111.activateBranch();
+		assertEquals(1, states.size());
+		assertEquals(child1 + "/" + child11 + "/" + child111, states.get(0));
+		assertEquals(child111, rootContext.getActiveLeaf());
+
+		// activating an active branch again doesn't notify
+		child111.activateBranch();
+		child11.activateBranch();
+		assertEquals(1, states.size());
+		assertEquals(child111, rootContext.getActiveLeaf());
+		rootContext.dispose();
+	}
+
+	public void testConcurrentActivation() throws Exception {
+		final IEclipseContext rootContext = EclipseContextFactory.create("root");
+		IEclipseContext child1 = rootContext.createChild("child1");
+		IEclipseContext child2 = rootContext.createChild("child2");
+		IEclipseContext[] leaves = new IEclipseContext[] {child1.createChild("child11"), child2.createChild("child21")};
+		leaves[0].activateBranch();
+		leaves[1].activateBranch();
+
+		final AtomicBoolean done = new AtomicBoolean();
+		Thread[] readers = new Thread[4];
+		for (int i = 0; i < readers.length; i++) {
+			readers[i] = new Thread() {
+				public void run() {
+					while (!done.get())
+						rootContext.getActiveLeaf();
+				}
+			};
+			readers[i].start();
+		}
+		try {
+			for (int i = 0; i < 20000; i++) {
+				IEclipseContext leaf = leaves[i % 2];
+				leaf.getParent().activate();
+				// a leaf computed by a reader before the change must not be cached
+				assertEquals(leaf, rootContext.getActiveLeaf());
+			}
+		} finally {
+			done.set(true);
+			for (int i = 0; i < readers.length; i++)
+				readers[i].join();
+		}
+		rootContext.dispose();
+	}
 }
@@ -10,9 +10,12 @@
  *******************************************************************************/
 package org.eclipse.e4.core.internal.tests.contexts;
 
+import java.lang.ref.WeakReference;
+
 import junit.framework.TestCase;
 
 import org.eclipse.e4.core.contexts.ContextFunction;
+import org.eclipse.e4.core.contexts.ContextKey;
 import org.eclipse.e4.core.contexts.EclipseContextFactory;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.core.contexts.RunAndTrack;
@@ -68,6 +71,54 @@ public class EclipseContextTest extends TestCase {
 		assertEquals("baz", context.get("foo"));
 	}
 
+	public void testContextKey() {
+		ContextKey key = ContextKey.get("foo");
+		assertSame(key, ContextKey.get("foo"));
+		assertSame(ContextKey.get(String.class), ContextKey.get(String.class.getName()));
+		assertNotSame(key, ContextKey.get("bar"));
+		assertFalse(key.getId() == ContextKey.get("bar").getId());
+
+		assertFalse(context.containsKey(key));
+		context.set(key, "bar");
+		assertTrue(context.containsKey(key));
+		assertEquals("bar", context.get("foo"));
+		assertEquals("bar", context.getLocal(key));
+		context.set("foo", "baz");
+		assertEquals("baz", context.get(key));
+		context.remove(key);
+		assertFalse(context.containsKey("foo"));
+
+		parentContext.set(key, "parent");
+		assertEquals("parent", context.get(key));
+		assertNull(context.getLocal(key));
+		parentContext.declareModifiable(key);
+		context.modify(key, "modified");
+		assertEquals("modified", parentContext.get("foo"));
+	}
+
+	public void testContextKeyDiscarded() {
+		String name = getName() + ".unused";
+		WeakReference<ContextKey> ref = new WeakReference<ContextKey>(ContextKey.get(name));
+		for (int i = 0; i < 4 && ref.get() != null; i++)
+			System.gc();
+		assertNull("Unreferenced keys should not be retained", ref.get());
+
+		ContextKey key = ContextKey.get(name);
+		assertSame(key, ContextKey.get(name));
+		assertEquals(name, key.getName());
+	}
+
+	public void testResolutionsBounded() {
+		String name = getName() + ".missing";
+		assertNull(context.get(name));
+		WeakReference<ContextKey> ref = new WeakReference<ContextKey>(ContextKey.get(name));
+		for (int i = 0; i < 1000; i++)
+			assertNull(context.get(name + i));
+		for (int i = 0; i < 4 && ref.get() != null; i++)
+			System.gc();
+		assertNull("Keys looked up once should not be cached forever", ref.get());
+	}
+
 	public void testGetLocal() {
 		assertNull(context.getLocal("foo"));
 		context.set("foo", "bar");
@@ -319,6 +370,169 @@ public class EclipseContextTest extends TestCase {
 		assertNull(child.get("x"));
 	}
 
+	public void testMissingKey() {
+		IEclipseContext child = context.createChild("child");
+		assertNull(child.get("missing"));
+		assertNull(child.get("missing"));
+		parentContext.set("missing", "parent");
+		assertEquals("parent", child.get("missing"));
+		parentContext.remove("missing");
+		assertNull(child.get("missing"));
+
+		// re-parenting a context changes what its descendants can see
+		IEclipseContext other = EclipseContextFactory.create("other");
+		other.set("missing", "other");
+		context.setParent(other);
+		assertEquals("other", child.get("missing"));
+		context.setParent(parentContext);
+		assertNull(child.get("missing"));
+	}
+
+	public void testInheritedValue() {
+		IEclipseContext child = context.createChild("child");
+		IEclipseContext grandChild = child.createChild("grandChild");
+		parentContext.set("inherited", "parent");
+		assertEquals("parent", grandChild.get("inherited"));
+		assertEquals("parent", grandChild.get("inherited"));
+		context.set("inherited", "context");
+		assertEquals("context", grandChild.get("inherited"));
+		parentContext.set("inherited", "parent2");
+		assertEquals("context", grandChild.get("inherited"));
+		context.remove("inherited");
+		assertEquals("parent2", grandChild.get("inherited"));
+		parentContext.set("inherited", new ContextFunction() {
+			public Object compute(IEclipseContext context) {
+				return "function";
+			}
+		});
+		assertEquals("function", grandChild.get("inherited"));
+		parentContext.set("inherited", null);
+		assertNull(grandChild.get("inherited"));
+
+		IEclipseContext other = EclipseContextFactory.create("other");
+		other.set("inherited", "other");
+		child.setParent(other);
+		assertEquals("other", grandChild.get("inherited"));
+	}
+
+	public void testInheritedValueNoCache() {
+		EclipseContext.setCacheResolutions(false);
+		try {
+			testInheritedValue();
+			testMissingKey();
+		} finally {
+			EclipseContext.setCacheResolutions(true);
+		}
+	}
+
+	public void testMissingKeyTracking() {
+		final IEclipseContext child = context.createChild("child");
+		final Object[] value = new Object[1];
+		assertNull(child.get("missing"));
+		child.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext eventsContext) {
+				value[0] = child.get("missing");
+				return true;
+			}
+		});
+		assertNull(value[0]);
+		parentContext.set("missing", "parent");
+		assertEquals("parent", value[0]);
+	}
+
+	public void testManyDependencies() {
+		final int count = 20;
+		for (int i = 0; i < count; i++)
+			parentContext.set("value-" + i, new Integer(i));
+		final int[] sum = new int[1];
+		context.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext eventsContext) {
+				runCounter++;
+				sum[0] = 0;
+				for (int i = 0; i < count; i++)
+					sum[0] += ((Integer) eventsContext.get("value-" + i)).intValue();
+				return true;
+			}
+		});
+		assertEquals(1, runCounter);
+		assertEquals(190, sum[0]);
+		for (int i = 0; i < count; i++) {
+			parentContext.set("value-" + i, new Integer(i + 1));
+			assertEquals(i + 2, runCounter);
+		}
+		assertEquals(210, sum[0]);
+		context.dispose();
+		assertEquals(0, listenersCount(parentContext));
+	}
+
+	public void testConcurrentGet() throws InterruptedException {
+		final IEclipseContext child = context.createChild("child");
+		parentContext.set("x", new Integer(1));
+		parentContext.set("y", new Integer(2));
+		parentContext.set("sum", new AddContextFunction());
+		final Throwable[] failure = new Throwable[1];
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						for (int j = 0; j < 1000; j++) {
+							assertEquals(new Integer(1), child.get("x"));
+							assertTrue(child.containsKey("y"));
+							assertEquals(new Integer(3), child.get("sum"));
+						}
+					} catch (Throwable e) {
+						failure[0] = e;
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++)
+			threads[i].join();
+		assertNull(failure[0]);
+		parentContext.set("x", new Integer(5));
+		assertEquals(new Integer(7), child.get("sum"));
+	}
+
+	public void testChangeWhileComputing() throws InterruptedException {
+		final IEclipseContext child = context;
+		child.set("a", new Integer(1));
+		child.set("b", new Integer(1));
+		final boolean[] changeDuringCompute = new boolean[1];
+		child.set("sum", new ContextFunction() {
+			public Object compute(IEclipseContext context) {
+				Integer b = (Integer) context.get("b");
+				if (changeDuringCompute[0]) {
+					changeDuringCompute[0] = false;
+					// another thread changes a dependency after it has been read
+					Thread thread = new Thread() {
+						public void run() {
+							child.set("b", new Integer(10));
+						}
+					};
+					thread.start();
+					try {
+						thread.join();
+					} catch (InterruptedException e) {
+						// ignore
+					}
+				}
+				Integer a = (Integer) context.get("a");
+				return new Integer(a.intValue() + b.intValue());
+			}
+		});
+		assertEquals(new Integer(2), child.get("sum"));
+
+		changeDuringCompute[0] = true;
+		child.set("a", new Integer(2));
+		// the value computed from the old "b" is returned, but not kept
+		assertEquals(new Integer(3), child.get("sum"));
+		assertEquals(new Integer(12), child.get("sum"));
+		child.set("a", new Integer(3));
+		assertEquals(new Integer(13), child.get("sum"));
+	}
+
 	private int listenersCount(IEclipseContext context) {
 		return ((EclipseContext) context).getListeners().size();		
 	}
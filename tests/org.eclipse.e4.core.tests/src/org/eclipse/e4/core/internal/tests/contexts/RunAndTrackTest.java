@@ -17,6 +17,7 @@ import java.util.List;
 
 import junit.framework.TestCase;
 
+import org.eclipse.e4.core.contexts.ComparingContextFunction;
 import org.eclipse.e4.core.contexts.ContextFunction;
 import org.eclipse.e4.core.contexts.EclipseContextFactory;
 import org.eclipse.e4.core.contexts.IEclipseContext;
@@ -196,4 +197,122 @@ public class RunAndTrackTest extends TestCase {
 		assertEquals("part1", windows[0].get(ACTIVE_PART));
 		assertEquals("part1", windows[0].get(ACTIVE_PART_ID));
 	}
+
+	public void testComputedChainRunsOnce() throws Exception {
+		final IEclipseContext context = EclipseContextFactory.create();
+		final int[] computed = new int[1];
+		context.set("a", "x");
+		context.set("b", new ContextFunction() {
+			public Object compute(IEclipseContext context) {
+				return "b" + context.get("a");
+			}
+		});
+		context.set("c", new ContextFunction() {
+			public Object compute(IEclipseContext context) {
+				return "c" + context.get("a");
+			}
+		});
+		context.set("d", new ContextFunction() {
+			public Object compute(IEclipseContext context) {
+				computed[0]++;
+				return (String) context.get("b") + context.get("c");
+			}
+		});
+		final int[] runs = new int[1];
+		final Object[] seen = new Object[1];
+		context.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				runs[0]++;
+				seen[0] = context.get("d");
+				return true;
+			}
+		});
+		assertEquals(1, runs[0]);
+		assertEquals(1, computed[0]);
+		assertEquals("bxcx", seen[0]);
+
+		// "d" is reached through both "b" and "c"
+		context.set("a", "y");
+		assertEquals(2, runs[0]);
+		assertEquals(2, computed[0]);
+		assertEquals("bycy", seen[0]);
+	}
+
+	public void testRunBatch() throws Exception {
+		final IEclipseContext parent = EclipseContextFactory.create();
+		final IEclipseContext context = parent.createChild();
+		final int[] runs = new int[1];
+		final String[] seen = new String[1];
+		context.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				runs[0]++;
+				seen[0] = "" + context.get("a") + context.get("b") + context.get("c");
+				return true;
+			}
+		});
+		assertEquals(1, runs[0]);
+		assertEquals("nullnullnull", seen[0]);
+
+		context.runBatch(new Runnable() {
+			public void run() {
+				context.set("a", "1");
+				parent.set("b", "2");
+				// nested batches are part of the outer batch
+				parent.runBatch(new Runnable() {
+					public void run() {
+						context.set("c", "3");
+					}
+				});
+				assertEquals("3", context.get("c"));
+				assertEquals(1, runs[0]);
+			}
+		});
+		assertEquals(2, runs[0]);
+		assertEquals("123", seen[0]);
+
+		context.set("a", "4");
+		assertEquals(3, runs[0]);
+		assertEquals("423", seen[0]);
+	}
+
+	public void testComparingFunction() throws Exception {
+		final IEclipseContext context = EclipseContextFactory.create();
+		final int[] computed = new int[1];
+		context.set("x", new Integer(1));
+		context.set("parity", new ComparingContextFunction() {
+			public Object compute(IEclipseContext context) {
+				computed[0]++;
+				return new Integer(((Integer) context.get("x")).intValue() % 2);
+			}
+		});
+		final int[] runs = new int[1];
+		final Object[] seen = new Object[1];
+		context.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				runs[0]++;
+				seen[0] = context.get("parity");
+				return true;
+			}
+		});
+		assertEquals(1, runs[0]);
+		assertEquals(new Integer(1), seen[0]);
+
+		// same parity: the value is computed again but the listener is not notified
+		context.set("x", new Integer(3));
+		assertEquals(2, computed[0]);
+		assertEquals(1, runs[0]);
+		assertEquals(new Integer(1), context.get("parity"));
+		assertEquals(2, computed[0]);
+
+		context.set("x", new Integer(4));
+		assertEquals(3, computed[0]);
+		assertEquals(2, runs[0]);
+		assertEquals(new Integer(0), seen[0]);
+
+		context.set("x", new Integer(6));
+		assertEquals(2, runs[0]);
+		context.set("x", new Integer(7));
+		assertEquals(3, runs[0]);
+		assertEquals(new Integer(1), seen[0]);
+	}
 }
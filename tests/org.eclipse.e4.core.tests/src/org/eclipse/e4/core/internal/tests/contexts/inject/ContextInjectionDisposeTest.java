@@ -10,6 +10,9 @@
  *******************************************************************************/
 package org.eclipse.e4.core.internal.tests.contexts.inject;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
@@ -140,4 +143,118 @@ public class ContextInjectionDisposeTest extends TestCase {
 		assertTrue(object.disposeInvoked);
 	}
 
+	public void testReleaseOneOfTwoObjects() {
+		class Injected {
+			boolean disposeInvoked = false;
+			Object methodValue;
+
+			@SuppressWarnings("unused")
+			@PreDestroy
+			public void dispose() {
+				disposeInvoked = true;
+			}
+
+			@SuppressWarnings("unused")
+			@Inject
+			public void InjectedMethod(@Optional String arg) {
+				methodValue = arg;
+			}
+		}
+		IEclipseContext context = EclipseContextFactory.create();
+		context.set(String.class.getName(), "abc");
+		Injected released = new Injected();
+		Injected kept = new Injected();
+		ContextInjectionFactory.inject(released, context);
+		ContextInjectionFactory.inject(kept, context);
+
+		ContextInjectionFactory.uninject(released, context);
+		assertTrue(released.disposeInvoked);
+		assertNull(released.methodValue);
+		assertFalse(kept.disposeInvoked);
+		assertEquals("abc", kept.methodValue);
+
+		// the remaining object is still tracked, the released one is not
+		context.set(String.class.getName(), "def");
+		assertEquals("def", kept.methodValue);
+		assertNull(released.methodValue);
+
+		// releasing twice has no effect
+		ContextInjectionFactory.uninject(released, context);
+		assertEquals("def", kept.methodValue);
+	}
+
+	static class EqualInjected {
+		int disposeCount = 0;
+
+		@Inject
+		@Optional
+		String field;
+
+		@PreDestroy
+		public void dispose() {
+			disposeCount++;
+		}
+
+		public boolean equals(Object obj) {
+			return obj instanceof EqualInjected;
+		}
+
+		public int hashCode() {
+			return 0;
+		}
+	}
+
+	public void testEqualObjectsTrackedSeparately() {
+		IEclipseContext context = EclipseContextFactory.create();
+		EqualInjected[] objects = new EqualInjected[100];
+		for (int i = 0; i < objects.length; i++) {
+			objects[i] = new EqualInjected();
+			ContextInjectionFactory.inject(objects[i], context);
+		}
+		// injecting again does not register the object twice
+		ContextInjectionFactory.inject(objects[0], context);
+
+		ContextInjectionFactory.uninject(objects[0], context);
+		assertEquals(1, objects[0].disposeCount);
+		assertEquals(0, objects[1].disposeCount);
+
+		context.set(String.class.getName(), "abc");
+		assertNull(objects[0].field);
+		assertEquals("abc", objects[1].field);
+
+		context.dispose();
+		assertEquals(1, objects[0].disposeCount);
+		for (int i = 1; i < objects.length; i++)
+			assertEquals(1, objects[i].disposeCount);
+	}
+
+	static class OrderedInjected {
+		final List<OrderedInjected> disposed;
+
+		@Inject
+		@Optional
+		String field;
+
+		OrderedInjected(List<OrderedInjected> disposed) {
+			this.disposed = disposed;
+		}
+
+		@PreDestroy
+		public void dispose() {
+			disposed.add(this);
+		}
+	}
+
+	public void testDisposalOrder() {
+		IEclipseContext context = EclipseContextFactory.create();
+		List<OrderedInjected> disposed = new ArrayList<OrderedInjected>();
+		List<OrderedInjected> objects = new ArrayList<OrderedInjected>();
+		for (int i = 0; i < 100; i++) {
+			OrderedInjected object = new OrderedInjected(disposed);
+			ContextInjectionFactory.inject(object, context);
+			objects.add(object);
+		}
+		context.dispose();
+		assertEquals(objects, disposed);
+	}
 }
@@ -11,10 +11,16 @@
 
 package org.eclipse.e4.core.internal.tests.contexts.inject;
 
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
 import junit.framework.TestCase;
 import org.eclipse.e4.core.contexts.ContextInjectionFactory;
 import org.eclipse.e4.core.contexts.EclipseContextFactory;
 import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.di.InjectionException;
 import org.eclipse.e4.core.di.annotations.CanExecute;
 import org.eclipse.e4.core.di.annotations.Execute;
 
@@ -54,6 +60,35 @@ public class ContextInjectionFactoryTest extends TestCase {
 		}
 	}
 
+	static class TestInjectAllObject {
+		final List<TestInjectAllObject> constructed;
+
+		@Inject
+		@Named("value")
+		public String value;
+
+		@Inject
+		public Runnable runnable;
+
+		public String constructedValue;
+
+		TestInjectAllObject(List<TestInjectAllObject> constructed) {
+			this.constructed = constructed;
+		}
+
+		@PostConstruct
+		public void init() {
+			constructedValue = value;
+			constructed.add(this);
+		}
+	}
+
+	static class TestInjectAllFailingObject {
+		@Inject
+		@Named("missing")
+		public Runnable missing;
+	}
+
 	private TestObject testObject;
 	private IEclipseContext context;
 
@@ -94,4 +129,58 @@ public class ContextInjectionFactoryTest extends TestCase {
 		assertTrue(basicResult instanceof TestConstructorObjectBasic);
 		assertTrue(((TestConstructorObjectBasic) basicResult).defaultConstructorCalled);
 	}
+
+	public void testInjectAll() {
+		context.set("value", "a");
+		context.set(Runnable.class, new Runnable() {
+			public void run() {
+				// placeholder
+			}
+		});
+		List<TestInjectAllObject> constructed = new ArrayList<TestInjectAllObject>();
+		List<TestInjectAllObject> objects = new ArrayList<TestInjectAllObject>();
+		for (int i = 0; i < 100; i++)
+			objects.add(new TestInjectAllObject(constructed));
+
+		ContextInjectionFactory.injectAll(objects, context);
+		assertEquals(objects, constructed);
+		for (TestInjectAllObject object : objects) {
+			assertEquals("a", object.value);
+			assertEquals("a", object.constructedValue);
+		}
+
+		// objects are tracked as if injected one by one
+		context.set("value", "b");
+		for (TestInjectAllObject object : objects) {
+			assertEquals("b", object.value);
+			assertEquals("a", object.constructedValue);
+		}
+	}
+
+	public void testInjectAllFailure() {
+		// values for all objects but the last one
+		context.set("value", "a");
+		context.set(Runnable.class, new Runnable() {
+			public void run() {
+				// placeholder
+			}
+		});
+		List<TestInjectAllObject> constructed = new ArrayList<TestInjectAllObject>();
+		List<Object> objects = new ArrayList<Object>();
+		for (int i = 0; i < 10; i++)
+			objects.add(new TestInjectAllObject(constructed));
+		objects.add(new TestInjectAllFailingObject());
+		try {
+			ContextInjectionFactory.injectAll(objects, context);
+			fail("Expected an InjectionException");
+		} catch (InjectionException e) {
+			// expected
+		}
+		assertTrue(constructed.isEmpty());
+
+		// none of the objects should be tracked after the failure
+		context.set("value", "b");
+		for (int i = 0; i < 10; i++)
+			assertNull(((TestInjectAllObject) objects.get(i)).value);
+	}
 }
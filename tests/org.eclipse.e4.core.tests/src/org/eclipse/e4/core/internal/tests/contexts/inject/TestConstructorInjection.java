@@ -23,6 +23,19 @@ import org.eclipse.e4.core.contexts.IEclipseContext;
 
 public class TestConstructorInjection extends TestCase {
 
+	static class TestOptionalConstructorObject {
+		public Runnable runnable;
+
+		public TestOptionalConstructorObject() {
+			// placeholder
+		}
+
+		@Inject
+		public TestOptionalConstructorObject(Runnable runnable) {
+			this.runnable = runnable;
+		}
+	}
+
 	static class TestConstructorObject {
 
 		public boolean defaultConstructorCalled = false;
@@ -117,4 +130,27 @@ public class TestConstructorInjection extends TestCase {
 
 	}
 
+	/**
+	 * The constructor is chosen again for every new object; a constructor that could not be
+	 * satisfied before is used once its arguments become available.
+	 */
+	public void testConstructorChoice() {
+		IEclipseContext context = EclipseContextFactory.create();
+		TestOptionalConstructorObject object = ContextInjectionFactory.make(TestOptionalConstructorObject.class, context);
+		assertNull(object.runnable);
+
+		Runnable runnable = new Runnable() {
+			public void run() {
+				// placeholder
+			}
+		};
+		context.set(Runnable.class, runnable);
+		object = ContextInjectionFactory.make(TestOptionalConstructorObject.class, context);
+		assertSame(runnable, object.runnable);
+
+		context.remove(Runnable.class);
+		object = ContextInjectionFactory.make(TestOptionalConstructorObject.class, context);
+		assertNull(object.runnable);
+	}
+
 }
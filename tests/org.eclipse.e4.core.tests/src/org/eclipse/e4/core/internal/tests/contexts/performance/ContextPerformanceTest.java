@@ -11,6 +11,10 @@
 
 package org.eclipse.e4.core.internal.tests.contexts.performance;
 
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
+
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -19,10 +23,15 @@ import org.eclipse.core.runtime.IAdapterManager;
 import org.eclipse.core.runtime.IExtensionRegistry;
 import org.eclipse.core.runtime.preferences.IPreferencesService;
 import org.eclipse.core.tests.harness.PerformanceTestRunner;
+import org.eclipse.e4.core.contexts.Active;
 import org.eclipse.e4.core.contexts.ContextFunction;
+import org.eclipse.e4.core.contexts.ContextInjectionFactory;
 import org.eclipse.e4.core.contexts.EclipseContextFactory;
 import org.eclipse.e4.core.contexts.IEclipseContext;
 import org.eclipse.e4.core.contexts.RunAndTrack;
+import org.eclipse.e4.core.di.annotations.Execute;
+import org.eclipse.e4.core.di.annotations.Optional;
+import org.eclipse.e4.core.internal.contexts.EclipseContext;
 import org.eclipse.e4.core.internal.tests.CoreTestsActivator;
 import org.eclipse.osgi.service.datalocation.Location;
 import org.eclipse.osgi.service.debug.DebugOptions;
@@ -32,6 +41,114 @@ import org.eclipse.osgi.service.debug.DebugOptions;
  */
 public class ContextPerformanceTest extends TestCase {
 
+	static public class InjectedSuperclass {
+		@Inject
+		@Optional
+		@Named("Value-1")
+		public Object superField;
+
+		@Inject
+		public void setValue(@Optional @Named("Value-2") Object value) {
+			// placeholder
+		}
+
+		@PostConstruct
+		public void init() {
+			// placeholder
+		}
+	}
+
+	static public class InjectedSubclass extends InjectedSuperclass {
+		@Inject
+		@Optional
+		@Named("Value-3")
+		public Object field;
+
+		@Inject
+		public void setValue(@Optional @Named("Value-4") Object value) {
+			// placeholder
+		}
+	}
+
+	static public class InjectedStatics {
+		@Inject
+		@Optional
+		@Named("Value-5")
+		static public Object static1;
+
+		@Inject
+		@Optional
+		@Named("Value-6")
+		static public Object static2;
+
+		@Inject
+		@Optional
+		@Named("Value-7")
+		static public Object static3;
+
+		@Inject
+		@Optional
+		@Named("Value-8")
+		static public Object static4;
+
+		@Inject
+		@Optional
+		@Named("Value-9")
+		public Object field;
+
+		@Inject
+		static public void setStatic1(@Optional @Named("Value-10") Object value) {
+			// placeholder
+		}
+
+		@Inject
+		static public void setStatic2(@Optional @Named("Value-11") Object value) {
+			// placeholder
+		}
+
+		@Inject
+		static public void setStatic3(@Optional @Named("Value-12") Object value) {
+			// placeholder
+		}
+	}
+
+	static public class InjectedStaticsSubclass extends InjectedStatics {
+		@Inject
+		@Optional
+		@Named("Value-13")
+		static public Object subclassStatic;
+	}
+
+	static public class Invoked {
+		@Execute
+		public void execute1(@Named("Value-1") Object value1) {
+			// placeholder
+		}
+	}
+
+	static public class Invoked4 {
+		@Execute
+		public void execute4(@Named("Value-1") Object value1, @Named("Value-2") Object value2, @Named("Value-3") Object value3, @Named("Value-4") Integer value4) {
+			// placeholder
+		}
+	}
+
+	static public class Invoked10 {
+		@Execute
+		public void execute10(@Named("Value-1") Object value1, @Named("Value-2") Object value2, @Named("Value-3") Object value3, @Named("Value-4") Integer value4, @Named("Value-5") Object value5, @Named("Value-6") Object value6, @Named("Value-7") Object value7, @Named("Value-8") Integer value8, @Optional @Named("Value-100") Object value100, @Optional @Named("Value-101") int value101) {
+			// placeholder
+		}
+	}
+
+	static public class ActiveListener {
+		public String activeName;
+
+		@Inject
+		public void setActiveName(@Active @Named("debugString") String name) {
+			activeName = name;
+		}
+	}
+
 	IEclipseContext parentContext, context;
 
 	public static Test suite() {
@@ -80,6 +197,40 @@ public class ContextPerformanceTest extends TestCase {
 		}.run(this, 10, 600000);
 	}
 
+	public void testLookupNoCache() {
+		EclipseContext.setCacheResolutions(false);
+		try {
+			testLookup();
+		} finally {
+			EclipseContext.setCacheResolutions(true);
+		}
+	}
+
+	/**
+	 * Looks up a value set in the root of a context tree as deep as the workbench ones.
+	 */
+	public void testLookupInherited() {
+		context.set("inherited", "value");
+		IEclipseContext leaf = context;
+		for (int i = 0; i < 10; i++)
+			leaf = leaf.createChild("level-" + i);
+		final IEclipseContext lookupContext = leaf;
+		new PerformanceTestRunner() {
+			protected void test() {
+				lookupContext.get("inherited");
+			}
+		}.run(this, 10, 600000);
+	}
+
+	public void testLookupInheritedNoCache() {
+		EclipseContext.setCacheResolutions(false);
+		try {
+			testLookupInherited();
+		} finally {
+			EclipseContext.setCacheResolutions(true);
+		}
+	}
+
 	public void testLookupContextFunction() {
 		context.set("somefunction", new ContextFunction() {
 			public Object compute(IEclipseContext context) {
@@ -137,4 +288,79 @@ public class ContextPerformanceTest extends TestCase {
 		}.run(this, 10, 400);
 	}
 
+	/**
+	 * Injects instances of a class hierarchy with overridden methods.
+	 */
+	public void testInjectHierarchy() {
+		new PerformanceTestRunner() {
+			protected void test() {
+				ContextInjectionFactory.inject(new InjectedSubclass(), context);
+			}
+		}.run(this, 10, 10000);
+	}
+
+	/**
+	 * Injects instances of classes with many static members, which are only injected once.
+	 */
+	public void testInjectStatics() {
+		new PerformanceTestRunner() {
+			protected void test() {
+				ContextInjectionFactory.inject(new InjectedStaticsSubclass(), context);
+			}
+		}.run(this, 10, 10000);
+	}
+
+	/**
+	 * Invokes methods with 1, 4 and 10 arguments to measure argument resolution.
+	 */
+	public void testInvoke1Argument() {
+		runInvoke(new Invoked());
+	}
+
+	public void testInvoke4Arguments() {
+		runInvoke(new Invoked4());
+	}
+
+	public void testInvoke10Arguments() {
+		runInvoke(new Invoked10());
+	}
+
+	/**
+	 * Switches focus between the leaves of two 10-level branches with 1000 objects injected
+	 * with values of the active context.
+	 */
+	public void testActivateBranch() {
+		IEclipseContext leaf1 = context;
+		IEclipseContext leaf2 = context;
+		for (int i = 0; i < 10; i++) {
+			leaf1 = leaf1.createChild("Branch1-" + i);
+			leaf2 = leaf2.createChild("Branch2-" + i);
+		}
+		final IEclipseContext[] leaves = new IEclipseContext[] {leaf1, leaf2};
+		leaf1.activateBranch();
+		final ActiveListener[] listeners = new ActiveListener[1000];
+		for (int i = 0; i < listeners.length; i++) {
+			listeners[i] = new ActiveListener();
+			ContextInjectionFactory.inject(listeners[i], context);
+		}
+		new PerformanceTestRunner() {
+			int i = 0;
+
+			protected void test() {
+				leaves[i++ % 2].activateBranch();
+			}
+		}.run(this, 10, 100);
+		leaf2.activateBranch();
+		assertEquals("Branch2-9", listeners[0].activeName);
+		assertEquals("Branch2-9", listeners[listeners.length - 1].activeName);
+	}
+
+	private void runInvoke(final Object object) {
+		new PerformanceTestRunner() {
+			protected void test() {
+				ContextInjectionFactory.invoke(object, Execute.class, context);
+			}
+		}.run(this, 10, 100000);
+	}
+
 }
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.tests.contexts.performance;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.e4.core.contexts.ContextInjectionFactory;
+import org.eclipse.e4.core.contexts.EclipseContextFactory;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.di.annotations.Optional;
+
+/**
+ * Checks that injecting a tracked object again after a context change allocates less
+ * than the first injection, which creates the listeners. The test only runs on VMs
+ * that support measuring thread allocations.
+ */
+public class InjectionAllocationTest extends TestCase {
+
+	static final int OBJECTS = 100;
+	static final int CHANGES = 1000;
+
+	static public class Injected {
+		@Inject
+		@Optional
+		@Named("value1")
+		public Object field;
+
+		public Object method;
+
+		@Inject
+		public void set(@Optional @Named("value1") Object value1, @Optional @Named("value2") Object value2) {
+			method = value1;
+		}
+	}
+
+	public static Test suite() {
+		return new TestSuite(InjectionAllocationTest.class);
+	}
+
+	public InjectionAllocationTest(String name) {
+		super(name);
+	}
+
+	public void testReinjection() throws Exception {
+		Method allocatedBytes = getAllocatedBytesMethod();
+		if (allocatedBytes == null)
+			return; // not supported
+		IEclipseContext context = EclipseContextFactory.create(getName());
+		context.set("value2", "b");
+		long threadId = Thread.currentThread().getId();
+		Object threadBean = ManagementFactory.getThreadMXBean();
+
+		// warm up class loading and caches before measuring
+		Injected warmUp = new Injected();
+		ContextInjectionFactory.inject(warmUp, context);
+		ContextInjectionFactory.uninject(warmUp, context);
+
+		Injected[] objects = new Injected[OBJECTS];
+		for (int i = 0; i < OBJECTS; i++)
+			objects[i] = new Injected();
+		long before = ((Long) allocatedBytes.invoke(threadBean, new Object[] {new Long(threadId)})).longValue();
+		for (int i = 0; i < OBJECTS; i++)
+			ContextInjectionFactory.inject(objects[i], context);
+		long after = ((Long) allocatedBytes.invoke(threadBean, new Object[] {new Long(threadId)})).longValue();
+		long perFirstInjection = (after - before) / OBJECTS;
+
+		Integer[] values = new Integer[CHANGES];
+		for (int i = 0; i < CHANGES; i++)
+			values[i] = new Integer(i);
+
+		// warm up caches before measuring
+		for (int i = 0; i < CHANGES; i++)
+			context.set("value1", values[i]);
+
+		before = ((Long) allocatedBytes.invoke(threadBean, new Object[] {new Long(threadId)})).longValue();
+		for (int i = 0; i < CHANGES; i++)
+			context.set("value1", values[i]);
+		after = ((Long) allocatedBytes.invoke(threadBean, new Object[] {new Long(threadId)})).longValue();
+
+		// includes the share of each context change
+		long perInjection = (after - before) / (CHANGES * OBJECTS);
+		for (int i = 0; i < OBJECTS; i++) {
+			assertEquals(values[CHANGES - 1], objects[i].field);
+			assertEquals(values[CHANGES - 1], objects[i].method);
+		}
+		assertTrue("Allocated " + perInjection + " bytes per re-injection and " + perFirstInjection + " per first injection", perInjection < perFirstInjection); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		context.dispose();
+	}
+
+	/**
+	 * The method is not part of the standard management API, so it is looked up reflectively.
+	 */
+	private Method getAllocatedBytesMethod() {
+		try {
+			Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean"); //$NON-NLS-1$
+			if (!beanClass.isInstance(ManagementFactory.getThreadMXBean()))
+				return null;
+			Method method = beanClass.getMethod("getThreadAllocatedBytes", new Class[] {long.class}); //$NON-NLS-1$
+			Method supported = beanClass.getMethod("isThreadAllocatedMemorySupported", new Class[0]); //$NON-NLS-1$
+			if (!((Boolean) supported.invoke(ManagementFactory.getThreadMXBean(), new Object[0])).booleanValue())
+				return null;
+			return method;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.tests.contexts.performance;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.e4.core.contexts.ContextInjectionFactory;
+import org.eclipse.e4.core.contexts.EclipseContextFactory;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.di.annotations.Optional;
+
+/**
+ * Checks the heap retained per tracked injection. The numbers are estimates based on
+ * the used heap before and after injecting a large number of objects.
+ */
+public class InjectionFootprintTest extends TestCase {
+
+	static final int OBJECTS = 10000;
+
+	// about 600 bytes with compressed references; leaves room for VMs with larger headers and references
+	static final int MAX_BYTES_PER_INJECTION = 2048;
+
+	static public class Injected {
+		@Inject
+		@Optional
+		@Named("value1")
+		public Object field1;
+
+		@Inject
+		@Optional
+		@Named("value2")
+		public Object field2;
+
+		public Object method;
+
+		@Inject
+		public void set(@Optional @Named("value3") Object value3, @Optional @Named("value4") Object value4) {
+			method = value3;
+		}
+	}
+
+	public static Test suite() {
+		return new TestSuite(InjectionFootprintTest.class);
+	}
+
+	public InjectionFootprintTest(String name) {
+		super(name);
+	}
+
+	public void testTrackedInjection() {
+		IEclipseContext context = EclipseContextFactory.create(getName());
+		context.set("value1", "a");
+		context.set("value2", "b");
+		context.set("value3", "c");
+		context.set("value4", "d");
+
+		// warm up class loading and caches before measuring
+		ContextInjectionFactory.inject(new Injected(), context);
+
+		Injected[] objects = new Injected[OBJECTS];
+		long before = usedMemory();
+		for (int i = 0; i < OBJECTS; i++) {
+			objects[i] = new Injected();
+			ContextInjectionFactory.inject(objects[i], context);
+		}
+		long after = usedMemory();
+		// two fields and a method are injected and tracked for each object
+		long perInjection = (after - before) / (OBJECTS * 3);
+		assertTrue("Retained bytes per tracked injection: " + perInjection, perInjection <= MAX_BYTES_PER_INJECTION); //$NON-NLS-1$
+
+		context.set("value1", "e");
+		for (int i = 0; i < OBJECTS; i++)
+			assertEquals("e", objects[i].field1);
+		context.dispose();
+	}
+
+	private long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		long used = runtime.totalMemory() - runtime.freeMemory();
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				// ignore
+			}
+			long current = runtime.totalMemory() - runtime.freeMemory();
+			if (current == used)
+				break;
+			used = current;
+		}
+		return used;
+	}
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.tests.di;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import junit.framework.TestCase;
+
+import org.eclipse.e4.core.di.IBinding;
+import org.eclipse.e4.core.di.IInjector;
+import org.eclipse.e4.core.di.InjectorFactory;
+
+public class BindingsTest extends TestCase {
+
+	static interface Greeting {
+		// marker
+	}
+
+	static public class Hello implements Greeting {
+		// placeholder
+	}
+
+	static public class Bye implements Greeting {
+		// placeholder
+	}
+
+	static public class Target {
+		@Inject
+		public Greeting greeting;
+
+		@Inject
+		@Named("bye")
+		public Greeting namedGreeting;
+	}
+
+	public void testQualifiedBindings() {
+		IInjector injector = InjectorFactory.makeInjector();
+		IBinding binding = injector.addBinding(Greeting.class);
+		binding.named("bye").implementedBy(Bye.class);
+		binding.implementedBy(Hello.class);
+
+		Target target = injector.make(Target.class, null);
+		assertTrue(target.greeting instanceof Hello);
+		assertTrue(target.namedGreeting instanceof Bye);
+	}
+
+	public void testReplaceBinding() {
+		IInjector injector = InjectorFactory.makeInjector();
+		IBinding binding = injector.addBinding(Greeting.class);
+		binding.named("bye").implementedBy(Hello.class);
+		binding.named("bye").implementedBy(Bye.class);
+		binding.implementedBy(Hello.class);
+
+		Target target = injector.make(Target.class, null);
+		assertTrue(target.greeting instanceof Hello);
+		assertTrue(target.namedGreeting instanceof Bye);
+
+		binding.implementedBy(Bye.class);
+		target = injector.make(Target.class, null);
+		assertTrue(target.greeting instanceof Bye);
+	}
+}
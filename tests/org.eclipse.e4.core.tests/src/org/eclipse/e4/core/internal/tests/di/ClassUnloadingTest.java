@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.e4.core.internal.tests.di;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import javax.inject.Inject;
+import javax.inject.Named;
+import junit.framework.TestCase;
+import org.eclipse.e4.core.contexts.ContextInjectionFactory;
+import org.eclipse.e4.core.contexts.EclipseContextFactory;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.di.annotations.Optional;
+
+/**
+ * Checks that the injector does not keep injected classes from being unloaded.
+ * This test relies on VM performing garbage collection and class unloading in
+ * System.gc().
+ */
+public class ClassUnloadingTest extends TestCase {
+
+	static public class Target {
+		@Inject
+		@Optional
+		@Named("value")
+		public Object field;
+
+		public Object method;
+
+		@Inject
+		public void set(@Optional @Named("value") Object value) {
+			method = value;
+		}
+	}
+
+	static public class StaticTarget {
+		@Inject
+		@Optional
+		@Named("value")
+		static public Object staticField;
+
+		@Inject
+		@Optional
+		@Named("value")
+		public Object field;
+	}
+
+	/**
+	 * Defines the given classes itself instead of delegating to the parent loader.
+	 */
+	static class ThrowawayLoader extends URLClassLoader {
+		final private List<String> classNames;
+
+		ThrowawayLoader(ClassLoader parent, List<String> classNames) {
+			super(new URL[0], parent);
+			this.classNames = classNames;
+		}
+
+		protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!classNames.contains(name))
+				return super.loadClass(name, resolve);
+			Class<?> result = findLoadedClass(name);
+			if (result == null) {
+				byte[] bytes = readClass(getParent(), name);
+				result = defineClass(name, bytes, 0, bytes.length);
+			}
+			if (resolve)
+				resolveClass(result);
+			return result;
+		}
+	}
+
+	public void testPlanDoesNotPinClass() throws Exception {
+		WeakReference<Class<?>> ref = injectInThrowawayLoader(Target.class);
+		collect(ref);
+		assertNull("The injected class should have been unloaded", ref.get());
+	}
+
+	public void testStaticFlagDoesNotPinClass() throws Exception {
+		WeakReference<Class<?>> ref = injectInThrowawayLoader(StaticTarget.class);
+		collect(ref);
+		assertNull("The injected class should have been unloaded", ref.get());
+	}
+
+	private WeakReference<Class<?>> injectInThrowawayLoader(Class<?> target) throws Exception {
+		List<String> names = new ArrayList<String>();
+		names.add(target.getName());
+		ClassLoader loader = new ThrowawayLoader(target.getClassLoader(), names);
+		Class<?> clazz = loader.loadClass(target.getName());
+		assertNotSame(target, clazz);
+
+		IEclipseContext context = EclipseContextFactory.create();
+		context.set("value", "abc");
+		Object object = clazz.newInstance();
+		ContextInjectionFactory.inject(object, context);
+		assertEquals("abc", clazz.getField("field").get(object));
+		ContextInjectionFactory.uninject(object, context);
+		context.dispose();
+		return new WeakReference<Class<?>>(clazz);
+	}
+
+	static byte[] readClass(ClassLoader loader, String name) throws ClassNotFoundException {
+		InputStream input = loader.getResourceAsStream(name.replace('.', '/') + ".class"); //$NON-NLS-1$
+		if (input == null)
+			throw new ClassNotFoundException(name);
+		try {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = input.read(buffer)) != -1)
+				output.write(buffer, 0, read);
+			return output.toByteArray();
+		} catch (IOException e) {
+			throw new ClassNotFoundException(name, e);
+		} finally {
+			try {
+				input.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	static void collect(WeakReference<?> ref) {
+		for (int i = 0; i < 4 && ref.get() != null; i++) {
+			System.runFinalization();
+			System.gc();
+		}
+	}
+}
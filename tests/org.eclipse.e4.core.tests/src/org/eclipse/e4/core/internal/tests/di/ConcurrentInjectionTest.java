@@ -0,0 +1,370 @@
+/*******************************************************************************
+ * Copyright (c) 2011 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.e4.core.internal.tests.di;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import junit.framework.TestCase;
+
+import org.eclipse.e4.core.contexts.ContextInjectionFactory;
+import org.eclipse.e4.core.contexts.EclipseContextFactory;
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.eclipse.e4.core.contexts.RunAndTrack;
+import org.eclipse.e4.core.di.InjectionException;
+import org.eclipse.e4.core.di.InjectorFactory;
+import org.eclipse.e4.core.di.suppliers.PrimaryObjectSupplier;
+import org.eclipse.e4.core.internal.contexts.ContextObjectSupplier;
+
+/**
+ * Checks that objects can be injected and created from several threads at once.
+ */
+public class ConcurrentInjectionTest extends TestCase {
+
+	static final int THREADS = 4;
+	static final int OBJECTS = 500;
+
+	static class Target {
+		@Inject
+		@Named("field")
+		private String field;
+
+		private String method;
+
+		boolean postConstruct;
+
+		@Inject
+		private void set(@Named("method") String value) {
+			method = value;
+		}
+
+		@PostConstruct
+		private void init() {
+			postConstruct = true;
+		}
+	}
+
+	@Singleton
+	static class SingletonTarget {
+		static int instances;
+
+		@Inject
+		@Named("field")
+		String field;
+
+		public SingletonTarget() {
+			synchronized (SingletonTarget.class) {
+				instances++;
+			}
+			// give other threads a chance to try creating the singleton as well
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		}
+	}
+
+	static class MadeTarget {
+		@Inject
+		SingletonTarget singleton;
+
+		@Inject
+		@Named("field")
+		String field;
+	}
+
+	static class StaticTarget {
+		static int staticInjections;
+
+		@Inject
+		@Named("field")
+		static String staticField;
+
+		@Inject
+		@Named("field")
+		String field;
+
+		@Inject
+		static void setStatic(@Named("method") String value) {
+			synchronized (StaticTarget.class) {
+				staticInjections++;
+			}
+		}
+	}
+
+	/**
+	 * Singletons whose constructors only return once both of them are being created.
+	 */
+	static CountDownLatch constructing;
+
+	static boolean awaitConstructing() {
+		constructing.countDown();
+		try {
+			return constructing.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			return false;
+		}
+	}
+
+	@Singleton
+	static class ConcurrentSingleton1 {
+		boolean concurrent = awaitConstructing();
+	}
+
+	@Singleton
+	static class ConcurrentSingleton2 {
+		boolean concurrent = awaitConstructing();
+	}
+
+	@Singleton
+	static class CycleSingleton1 {
+		boolean concurrent = awaitConstructing();
+
+		@Inject
+		CycleSingleton2 other;
+	}
+
+	@Singleton
+	static class CycleSingleton2 {
+		boolean concurrent = awaitConstructing();
+
+		@Inject
+		CycleSingleton1 other;
+	}
+
+	public void testPrivateMembers() throws Exception {
+		final IEclipseContext context = EclipseContextFactory.create();
+		context.set("field", "a");
+		context.set("method", "b");
+
+		ContextInjectionFactory.inject(new Target(), context);
+
+		final Throwable[] failure = new Throwable[1];
+		Thread[] threads = new Thread[THREADS];
+		for (int i = 0; i < THREADS; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						for (int j = 0; j < OBJECTS; j++) {
+							Target target = new Target();
+							ContextInjectionFactory.inject(target, context);
+							assertEquals("a", target.field);
+							assertEquals("b", target.method);
+							assertTrue(target.postConstruct);
+						}
+					} catch (Throwable e) {
+						synchronized (failure) {
+							failure[0] = e;
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < THREADS; i++)
+			threads[i].join();
+		if (failure[0] != null)
+			fail(failure[0].toString());
+		context.dispose();
+	}
+
+	public void testConcurrentMake() throws Exception {
+		final IEclipseContext context = EclipseContextFactory.create();
+		context.set("field", "a");
+		SingletonTarget.instances = 0;
+
+		final MadeTarget[][] results = new MadeTarget[THREADS][OBJECTS / 10];
+		final Throwable[] failure = new Throwable[1];
+		Thread[] threads = new Thread[THREADS];
+		for (int i = 0; i < THREADS; i++) {
+			final int thread = i;
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						for (int j = 0; j < results[thread].length; j++)
+							results[thread][j] = ContextInjectionFactory.make(MadeTarget.class, context);
+					} catch (Throwable e) {
+						synchronized (failure) {
+							failure[0] = e;
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < THREADS; i++)
+			threads[i].join();
+		if (failure[0] != null)
+			fail(failure[0].toString());
+
+		assertEquals(1, SingletonTarget.instances);
+		SingletonTarget singleton = results[0][0].singleton;
+		assertEquals("a", singleton.field);
+		for (int i = 0; i < THREADS; i++) {
+			for (int j = 0; j < results[i].length; j++) {
+				assertSame(singleton, results[i][j].singleton);
+				assertEquals("a", results[i][j].field);
+			}
+		}
+		context.dispose();
+	}
+
+	public void testDifferentSingletonsConcurrently() throws Exception {
+		Object[] results = makeConcurrently(ConcurrentSingleton1.class, ConcurrentSingleton2.class);
+		assertTrue(((ConcurrentSingleton1) results[0]).concurrent);
+		assertTrue(((ConcurrentSingleton2) results[1]).concurrent);
+	}
+
+	public void testRecursiveSingletonsOnTwoThreads() throws Exception {
+		// each thread waits for the singleton the other thread is creating
+		Object[] results = makeConcurrently(CycleSingleton1.class, CycleSingleton2.class);
+		assertTrue(results[0] instanceof InjectionException);
+		assertTrue(results[1] instanceof InjectionException);
+	}
+
+	/**
+	 * Makes the classes on two threads at once. Returns the objects made, or the exceptions
+	 * thrown trying to make them.
+	 */
+	private Object[] makeConcurrently(final Class<?> class1, final Class<?> class2) throws Exception {
+		final IEclipseContext context = EclipseContextFactory.create();
+		constructing = new CountDownLatch(2);
+		final Object[] results = new Object[2];
+		Thread[] threads = new Thread[2];
+		for (int i = 0; i < 2; i++) {
+			final int thread = i;
+			final Class<?> clazz = (i == 0) ? class1 : class2;
+			threads[i] = new Thread() {
+				public void run() {
+					Object result;
+					try {
+						result = ContextInjectionFactory.make(clazz, context);
+					} catch (Throwable e) {
+						result = e;
+					}
+					synchronized (results) {
+						results[thread] = result;
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < 2; i++) {
+			threads[i].join(20000);
+			assertFalse("Creating singletons did not complete", threads[i].isAlive());
+		}
+		context.dispose();
+		synchronized (results) {
+			return results;
+		}
+	}
+
+	public void testStaticInjectedOnce() throws Exception {
+		final IEclipseContext context = EclipseContextFactory.create();
+		context.set("field", "a");
+		context.set("method", "b");
+
+		final Throwable[] failure = new Throwable[1];
+		Thread[] threads = new Thread[THREADS];
+		for (int i = 0; i < THREADS; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					try {
+						for (int j = 0; j < OBJECTS / 10; j++) {
+							StaticTarget target = new StaticTarget();
+							ContextInjectionFactory.inject(target, context);
+							assertEquals("a", target.field);
+						}
+					} catch (Throwable e) {
+						synchronized (failure) {
+							failure[0] = e;
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < THREADS; i++)
+			threads[i].join();
+		if (failure[0] != null)
+			fail(failure[0].toString());
+
+		assertEquals(1, StaticTarget.staticInjections);
+		assertEquals("a", StaticTarget.staticField);
+		context.dispose();
+	}
+
+	public void testPauseRecordingPerThread() throws Exception {
+		final IEclipseContext context = EclipseContextFactory.create();
+		final PrimaryObjectSupplier supplier = ContextObjectSupplier.getObjectSupplier(context, InjectorFactory.getDefault());
+		context.set("x", "a");
+		final Object lock = new Object();
+		final int[] state = new int[1];
+		final int[] runs = new int[1];
+
+		// another thread pauses and resumes recording while this thread has it paused
+		final Thread other = new Thread() {
+			public void run() {
+				supplier.pauseRecording();
+				synchronized (lock) {
+					state[0] = 1;
+					lock.notifyAll();
+					while (state[0] != 2)
+						waitFor(lock);
+				}
+				supplier.resumeRecoding();
+			}
+		};
+		context.runAndTrack(new RunAndTrack() {
+			public boolean changed(IEclipseContext context) {
+				runs[0]++;
+				if (runs[0] > 1) {
+					context.get("x");
+					return true;
+				}
+				supplier.pauseRecording();
+				other.start();
+				synchronized (lock) {
+					while (state[0] != 1)
+						waitFor(lock);
+				}
+				supplier.resumeRecoding();
+				// recorded even though the other thread still has recording paused
+				context.get("x");
+				synchronized (lock) {
+					state[0] = 2;
+					lock.notifyAll();
+				}
+				return true;
+			}
+		});
+		other.join();
+		assertEquals(1, runs[0]);
+
+		context.set("x", "b");
+		assertEquals(2, runs[0]);
+		context.dispose();
+	}
+
+	static void waitFor(Object lock) {
+		try {
+			lock.wait();
+		} catch (InterruptedException e) {
+			// ignore
+		}
+	}
+}
@@ -66,6 +66,23 @@ public class InjectBaseTypeTest extends TestCase {
 		
 	}
 
+	static class OptionalClass {
+		@Inject @Optional @Named("test_missing")
+		public long longField = 1;
+		
+		@Inject @Optional @Named("test_missing")
+		public char charField = 'a';
+		
+		@Inject @Optional @Named("test_missing")
+		public Integer integerField = new Integer(1);
+		
+		@Inject @Optional @Named("test_string")
+		public double doubleField = 1;
+		
+		@Inject @Optional @Named("test_string")
+		public byte byteField = 1;
+	}
+
 	public void testPrimitiveTypes() {
 		IEclipseContext context = EclipseContextFactory.create();
 		context.set("test_int", 12);
@@ -113,4 +130,17 @@ public class InjectBaseTypeTest extends TestCase {
 		assertEquals(true, testClass.booleanArg);
 		
 	}
+
+	public void testOptionalDefaults() {
+		IEclipseContext context = EclipseContextFactory.create();
+		// values of the wrong type are not injected
+		context.set("test_string", "abc");
+		
+		OptionalClass testClass = ContextInjectionFactory.make(OptionalClass.class, context);
+		assertEquals(0L, testClass.longField);
+		assertEquals((char) 0, testClass.charField);
+		assertNull(testClass.integerField);
+		assertEquals(0.0d, testClass.doubleField);
+		assertEquals((byte) 0, testClass.byteField);
+	}
 }
@@ -41,6 +41,9 @@ import org.eclipse.e4.core.internal.tests.contexts.inject.ProviderInjectionTest;
 import org.eclipse.e4.core.internal.tests.contexts.inject.ServiceContextTest;
 import org.eclipse.e4.core.internal.tests.contexts.inject.TestConstructorInjection;
 import org.eclipse.e4.core.internal.tests.di.AtInjectTest;
+import org.eclipse.e4.core.internal.tests.di.BindingsTest;
+import org.eclipse.e4.core.internal.tests.di.ClassUnloadingTest;
+import org.eclipse.e4.core.internal.tests.di.ConcurrentInjectionTest;
 import org.eclipse.e4.core.internal.tests.di.DisposeClassLinkTest;
 import org.eclipse.e4.core.internal.tests.di.InjectArraysTest;
 import org.eclipse.e4.core.internal.tests.di.InjectBaseTypeTest;
@@ -67,6 +70,9 @@ public class CoreTestSuite extends TestSuite {
 		addTestSuite(InvokeTest.class);
 		addTestSuite(InjectBaseTypeTest.class);
 		addTestSuite(InjectionResultLeakTest.class);
+		addTestSuite(ClassUnloadingTest.class);
+		addTestSuite(ConcurrentInjectionTest.class);
+		addTestSuite(BindingsTest.class);
 		addTest(AtInjectTest.suite());
 
 		// Contexts